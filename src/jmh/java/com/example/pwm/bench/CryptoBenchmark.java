@@ -0,0 +1,130 @@
+package com.example.pwm.bench;
+
+import com.example.pwm.service.CryptoService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AES-GCM über die String-API (Base64), wie sie Controller und Entities nutzen.
+ * {@code *Legacy} ist der CryptoService vor dem Cipher-Reuse als Vergleichsbasis; beide Formate sind identisch.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class CryptoBenchmark {
+
+    @Param({"32", "1024"})
+    public int size;
+
+    private CryptoService crypto;
+    private Legacy legacy;
+    private String plaintext;
+    private String ciphertext;
+
+    @Setup
+    public void setup() {
+        byte[] raw = new byte[32];
+        crypto = new CryptoService(new SimpleMeterRegistry(), Base64.getEncoder().encodeToString(raw));
+        legacy = new Legacy(raw);
+        plaintext = "x".repeat(size);
+        ciphertext = crypto.encrypt(plaintext);
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return crypto.encrypt(plaintext);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return crypto.decrypt(ciphertext);
+    }
+
+    @Benchmark
+    public String encryptLegacy() {
+        return legacy.encrypt(plaintext);
+    }
+
+    @Benchmark
+    public String decryptLegacy() {
+        return legacy.decrypt(ciphertext);
+    }
+
+    /** Unveränderte Kopie des alten CryptoService: Cipher.getInstance und SecretKeySpec pro Aufruf, Zwischenkopien. */
+    static final class Legacy {
+
+        private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+        private static final int GCM_TAG_BITS = 128;
+        private static final int IV_LEN = 12;
+
+        private final byte[] key;
+        private final SecureRandom rnd = new SecureRandom();
+
+        Legacy(byte[] key) {
+            this.key = key;
+        }
+
+        String encrypt(String plaintext) {
+            if (plaintext == null) return null;
+            try {
+                byte[] iv = new byte[IV_LEN];
+                rnd.nextBytes(iv);
+
+                Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+                cipher.init(
+                        Cipher.ENCRYPT_MODE,
+                        new SecretKeySpec(key, "AES"),
+                        new GCMParameterSpec(GCM_TAG_BITS, iv)
+                );
+
+                byte[] ct = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+
+                byte[] out = new byte[iv.length + ct.length];
+                System.arraycopy(iv, 0, out, 0, iv.length);
+                System.arraycopy(ct, 0, out, iv.length, ct.length);
+
+                return Base64.getEncoder().encodeToString(out);
+            } catch (Exception e) {
+                throw new RuntimeException("Encrypt failed", e);
+            }
+        }
+
+        String decrypt(String b64) {
+            if (b64 == null) return null;
+            try {
+                byte[] in = Base64.getDecoder().decode(b64);
+                if (in.length <= IV_LEN) {
+                    throw new IllegalArgumentException("Ciphertext zu kurz");
+                }
+
+                byte[] iv = new byte[IV_LEN];
+                byte[] ct = new byte[in.length - IV_LEN];
+                System.arraycopy(in, 0, iv, 0, IV_LEN);
+                System.arraycopy(in, IV_LEN, ct, 0, ct.length);
+
+                Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+                cipher.init(
+                        Cipher.DECRYPT_MODE,
+                        new SecretKeySpec(key, "AES"),
+                        new GCMParameterSpec(GCM_TAG_BITS, iv)
+                );
+
+                byte[] pt = cipher.doFinal(ct);
+                return new String(pt, StandardCharsets.UTF_8);
+            } catch (Exception e) {
+                throw new RuntimeException("Decrypt failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.pwm.bench;
+
+import com.example.pwm.service.JwtKeyRing;
+import com.example.pwm.service.JwtService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/** Token ausstellen und prüfen (HS256 vs. ES256); "cold" läuft ohne Verify-Cache (cache-size 0), also der Stand davor. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+
+    private static final String SECRET = "bench-secret-0123456789abcdef0123456789";
+
+    @Param({"HS256", "ES256"})
+    public String alg;
+
+    private JwtService cached;
+    private JwtService cold;
+    private UUID userId;
+    private UUID sessionId;
+    private String token;
+
+    @Setup
+    public void setup() throws Exception {
+        JwtKeyRing keys = "ES256".equals(alg)
+                ? new JwtKeyRing(ecKey("bench"), "", "")
+                : new JwtKeyRing("", "", SECRET);
+        cached = new JwtService(new SimpleMeterRegistry(), keys, 10_000);
+        cold = new JwtService(new SimpleMeterRegistry(), keys, 0);
+        userId = UUID.randomUUID();
+        sessionId = UUID.randomUUID();
+        token = cached.issueToken(userId, sessionId, Duration.ofHours(12));
+    }
+
+    @Benchmark
+    public String issueToken() {
+        return cached.issueToken(userId, sessionId, Duration.ofHours(12));
+    }
+
+    @Benchmark
+    public UUID parseUserIdCached() {
+        return cached.parseUserId(token);
+    }
+
+    @Benchmark
+    public UUID parseUserIdCold() {
+        return cold.parseUserId(token);
+    }
+
+    private static String ecKey(String kid) throws Exception {
+        KeyPairGenerator gen = KeyPairGenerator.getInstance("EC");
+        gen.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair kp = gen.generateKeyPair();
+        Base64.Encoder b64 = Base64.getEncoder();
+        return kid + ":" + b64.encodeToString(kp.getPrivate().getEncoded()) + ":" + b64.encodeToString(kp.getPublic().getEncoded());
+    }
+}
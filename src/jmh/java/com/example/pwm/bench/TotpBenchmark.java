@@ -0,0 +1,133 @@
+package com.example.pwm.bench;
+
+import com.example.pwm.service.TotpService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base32-Helfer und TOTP-Prüfung; "miss" rechnet das ganze Fenster durch (Worst Case).
+ * {@code *Legacy} ist der Stand vor {@link TotpService} (statische Helfer im AuthController) als Vergleichsbasis.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class TotpBenchmark {
+
+    private static final long NOW = 1_700_000_000L;
+
+    private TotpService totp;
+    private String secret;
+    private byte[] raw;
+    private int validCode;
+    private int invalidCode;
+
+    @Setup
+    public void setup() {
+        totp = new TotpService(new SimpleMeterRegistry(), 1_000);
+        secret = totp.newSecretBase32();
+        raw = TotpService.base32Decode(secret);
+        for (int c = 0; c < 1_000_000; c++) {
+            if (totp.matchingStep(secret, c, NOW) >= 0) { validCode = c; break; }
+        }
+        invalidCode = validCode;
+        while (totp.matchingStep(secret, invalidCode, NOW) >= 0) {
+            invalidCode = (invalidCode + 1) % 1_000_000;
+        }
+    }
+
+    @Benchmark
+    public String base32Encode() {
+        return TotpService.base32Encode(raw);
+    }
+
+    @Benchmark
+    public byte[] base32Decode() {
+        return TotpService.base32Decode(secret);
+    }
+
+    @Benchmark
+    public long matchingStepHit() {
+        return totp.matchingStep(secret, validCode, NOW);
+    }
+
+    @Benchmark
+    public long matchingStepMiss() {
+        return totp.matchingStep(secret, invalidCode, NOW);
+    }
+
+    @Benchmark
+    public byte[] base32DecodeLegacy() {
+        return Legacy.base32Decode(secret);
+    }
+
+    @Benchmark
+    public boolean matchingStepHitLegacy() {
+        return Legacy.totpMatches(Legacy.base32Decode(secret), validCode, NOW);
+    }
+
+    @Benchmark
+    public boolean matchingStepMissLegacy() {
+        return Legacy.totpMatches(Legacy.base32Decode(secret), invalidCode, NOW);
+    }
+
+    /** Unveränderte Kopie der alten AuthController-Helfer: Tabelle pro Aufruf, Mac.getInstance pro Zeitschritt. */
+    static final class Legacy {
+
+        static byte[] base32Decode(String s) {
+            if (s == null) return new byte[0];
+            int[] map = new int[256];
+            Arrays.fill(map, -1);
+            char[] ALPH = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567".toCharArray();
+            for (int i = 0; i < ALPH.length; i++) map[ALPH[i]] = i;
+            String up = s.trim().toUpperCase(Locale.ROOT).replace("=", "");
+            int buffer = 0, bitsLeft = 0;
+            ByteBuffer out = ByteBuffer.allocate((up.length() * 5) / 8 + 1);
+            for (int i = 0; i < up.length(); i++) {
+                int v = up.charAt(i) < 256 ? map[up.charAt(i)] : -1;
+                if (v < 0) throw new IllegalArgumentException("Invalid base32 char: " + up.charAt(i));
+                buffer = (buffer << 5) | v;
+                bitsLeft += 5;
+                if (bitsLeft >= 8) {
+                    out.put((byte) ((buffer >> (bitsLeft - 8)) & 0xFF));
+                    bitsLeft -= 8;
+                }
+            }
+            out.flip();
+            byte[] arr = new byte[out.remaining()];
+            out.get(arr);
+            return arr;
+        }
+
+        static int hotp(byte[] key, long counter) {
+            try {
+                Mac mac = Mac.getInstance("HmacSHA1");
+                mac.init(new SecretKeySpec(key, "HmacSHA1"));
+                byte[] msg = ByteBuffer.allocate(8).putLong(counter).array();
+                byte[] h = mac.doFinal(msg);
+                int off = h[h.length - 1] & 0x0F;
+                int bin = ((h[off] & 0x7F) << 24) | ((h[off + 1] & 0xFF) << 16) |
+                          ((h[off + 2] & 0xFF) << 8) | (h[off + 3] & 0xFF);
+                return bin % 1_000_000;
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        static boolean totpMatches(byte[] key, int code, long ts) {
+            for (int w = -TotpService.WINDOW; w <= TotpService.WINDOW; w++) {
+                if (hotp(key, Math.floorDiv(ts + w * TotpService.STEP_SECONDS, TotpService.STEP_SECONDS)) == code) return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.pwm.load;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Latenzen je Endpoint sammeln und als Tabelle (Durchsatz, p50/p95/p99) ausgeben. */
+final class EndpointStats {
+
+    private static final class Series {
+        private long[] nanos = new long[1 << 12];
+        private int size;
+        private final AtomicLong errors = new AtomicLong();
+
+        synchronized void add(long n) {
+            if (size == nanos.length) nanos = Arrays.copyOf(nanos, size * 2);
+            nanos[size++] = n;
+        }
+
+        synchronized long[] snapshot() {
+            long[] copy = Arrays.copyOf(nanos, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+    private volatile boolean recording;
+
+    void start() { recording = true; }
+    void stop()  { recording = false; }
+
+    void record(String endpoint, long nanos, boolean ok) {
+        if (!recording) return;
+        Series s = series.computeIfAbsent(endpoint, k -> new Series());
+        s.add(nanos);
+        if (!ok) s.errors.incrementAndGet();
+    }
+
+    String report(double seconds) {
+        StringBuilder sb = new StringBuilder(String.format(Locale.ROOT,
+                "%-24s %8s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "count", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        series.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(e -> {
+            long[] v = e.getValue().snapshot();
+            if (v.length == 0) return;
+            sb.append(String.format(Locale.ROOT, "%-24s %8d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                    e.getKey(), v.length, e.getValue().errors.get(), v.length / seconds,
+                    ms(pct(v, 0.50)), ms(pct(v, 0.95)), ms(pct(v, 0.99)), ms(v[v.length - 1])));
+        });
+        return sb.toString();
+    }
+
+    private static long pct(long[] sorted, double p) {
+        int idx = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(idx, sorted.length - 1))];
+    }
+
+    private static double ms(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
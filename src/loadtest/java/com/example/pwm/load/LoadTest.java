@@ -0,0 +1,266 @@
+package com.example.pwm.load;
+
+import com.example.pwm.BackendApplication;
+import com.example.pwm.service.TotpService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * End-to-End-Last: login → totp-verify → me → voice/challenge → verify → voice/finalize.
+ *
+ * Ohne {@code -Dload.base-url} wird die App gegen ein eingebettetes Postgres gestartet
+ * (Flyway wie in Produktion, Rate-Limit aus). Weitere Argumente gehen als Spring-Properties
+ * an die App, z. B. {@code --app.voice.store=jpa}.
+ *
+ * System-Properties: load.users (200), load.concurrency (16), load.warmup (10 s),
+ * load.duration (60 s), load.base-url.
+ */
+public final class LoadTest {
+
+    private static final String PASSWORD = "load-test-Passw0rd";
+    private static final String PIN = "4711";
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    /** Seed-Zustand eines Users; jeder User gehört genau einem Worker. */
+    private static final class VUser {
+        final String email;
+        final String alexaUserId;
+        String secret;
+        long lastStep = Long.MIN_VALUE;
+
+        VUser(String email, String alexaUserId) {
+            this.email = email;
+            this.alexaUserId = alexaUserId;
+        }
+    }
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final String baseUrl;
+    private final EndpointStats stats = new EndpointStats();
+
+    private LoadTest(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int users = Integer.getInteger("load.users", 200);
+        int concurrency = Integer.getInteger("load.concurrency", 16);
+        int warmup = Integer.getInteger("load.warmup", 10);
+        int duration = Integer.getInteger("load.duration", 60);
+        String baseUrl = System.getProperty("load.base-url");
+
+        EmbeddedPostgres pg = null;
+        ConfigurableApplicationContext app = null;
+        try {
+            if (baseUrl == null || baseUrl.isBlank()) {
+                pg = EmbeddedPostgres.builder().start();
+                app = startApp(pg, args);
+                baseUrl = "http://127.0.0.1:" + app.getEnvironment().getProperty("local.server.port");
+            }
+            LoadTest t = new LoadTest(baseUrl);
+            System.out.printf(Locale.ROOT, "Ziel %s, %d User, Concurrency %d, Warmup %d s, Dauer %d s%n",
+                    baseUrl, users, concurrency, warmup, duration);
+
+            List<VUser> seeded = t.seed(users, concurrency);
+            System.out.printf(Locale.ROOT, "%d User angelegt%n", seeded.size());
+            t.run(seeded, concurrency, warmup, duration);
+            System.out.println();
+            System.out.print(t.stats.report(duration));
+        } finally {
+            if (app != null) app.close();
+            if (pg != null) pg.close();
+        }
+    }
+
+    static ConfigurableApplicationContext startApp(EmbeddedPostgres pg, String[] args) {
+        // System-Properties schlagen application.yml; Kommandozeilen-Argumente schlagen beide
+        Map<String, String> props = new LinkedHashMap<>();
+        props.put("server.port", "0");
+        props.put("management.server.port", "0");
+        props.put("server.address", "127.0.0.1");
+        props.put("spring.datasource.url", pg.getJdbcUrl("postgres", "postgres"));
+        props.put("spring.datasource.username", "postgres");
+        props.put("spring.datasource.password", "postgres");
+        props.put("spring.jpa.hibernate.ddl-auto", "validate");
+        props.put("spring.main.banner-mode", "off");
+        props.put("app.jwt.secret", "load-test-secret-0123456789abcdef0123");
+        props.put("app.encryption.key-b64", Base64.getEncoder().encodeToString(new byte[32]));
+        // Misst die Anwendung, nicht den Schutz vor Brute-Force von einer einzigen Quell-IP
+        props.put("app.ratelimit.enabled", "false");
+        props.forEach((k, v) -> {
+            if (System.getProperty(k) == null) System.setProperty(k, v);
+        });
+        return new SpringApplicationBuilder(BackendApplication.class).run(args);
+    }
+
+    // ---------- Seeding: register → login → totp → link → pin ----------
+
+    private List<VUser> seed(int users, int concurrency) throws Exception {
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        try {
+            List<Future<VUser>> futures = new ArrayList<>(users);
+            for (int i = 0; i < users; i++) {
+                VUser u = new VUser("load-" + runId + "-" + i + "@example.test", "load-" + runId + "-" + i);
+                futures.add(pool.submit(() -> seedOne(u)));
+            }
+            List<VUser> out = new ArrayList<>(users);
+            for (Future<VUser> f : futures) out.add(f.get());
+            return out;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private VUser seedOne(VUser u) throws Exception {
+        JsonNode reg = call("seed", "POST", "/api/auth/register", null,
+                Map.of("email", u.email, "password", PASSWORD), 201);
+        u.secret = reg.get("secretBase32").asText();
+        String token = loginAndVerify(u, "seed", "seed");
+        String linkCode = call("seed", "POST", "/api/voice/link/start", token, null, 200).get("code").asText();
+        call("seed", "POST", "/api/voice/link/complete", null,
+                Map.of("code", linkCode, "alexaUserId", u.alexaUserId), 200);
+        call("seed", "POST", "/api/voice/pin", token, Map.of("pin", PIN), 200);
+        return u;
+    }
+
+    // ---------- Last ----------
+
+    private void run(List<VUser> users, int concurrency, int warmup, int duration) throws Exception {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmup + duration);
+        AtomicInteger flows = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int w = 0; w < concurrency; w++) {
+            List<VUser> mine = new ArrayList<>();
+            for (int i = w; i < users.size(); i += concurrency) mine.add(users.get(i));
+            workers.add(pool.submit(() -> {
+                work(mine, end, flows);
+                return null;
+            }));
+        }
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+        timer.schedule(stats::start, warmup, TimeUnit.SECONDS);
+        try {
+            for (Future<?> f : workers) f.get();
+        } finally {
+            stats.stop();
+            timer.shutdownNow();
+            pool.shutdown();
+        }
+        System.out.printf(Locale.ROOT, "%d Flows abgeschlossen%n", flows.get());
+    }
+
+    private void work(List<VUser> mine, long end, AtomicInteger flows) throws InterruptedException {
+        if (mine.isEmpty()) return;
+        int i = 0;
+        while (System.nanoTime() < end) {
+            VUser u = nextUsable(mine, i);
+            if (u == null) {
+                // Alle Zeitschritte dieses Workers verbraucht (Replay-Schutz): nächsten Schritt abwarten
+                long ms = TotpService.STEP_SECONDS * 1000L - (System.currentTimeMillis() % (TotpService.STEP_SECONDS * 1000L));
+                Thread.sleep(Math.min(ms + 10, TimeUnit.NANOSECONDS.toMillis(Math.max(0, end - System.nanoTime())) + 1));
+                continue;
+            }
+            i = mine.indexOf(u) + 1;
+            try {
+                flow(u);
+                flows.incrementAndGet();
+            } catch (Exception e) {
+                // schon als Fehler gezählt; mit dem nächsten User weitermachen
+            }
+        }
+    }
+
+    /** Nächster User ab Index {@code from}, der im aktuellen TOTP-Fenster noch einen freien Schritt hat. */
+    private static VUser nextUsable(List<VUser> mine, int from) {
+        long base = Instant.now().getEpochSecond() / TotpService.STEP_SECONDS;
+        for (int k = 0; k < mine.size(); k++) {
+            VUser u = mine.get((from + k) % mine.size());
+            if (Math.max(u.lastStep + 1, base - TotpService.WINDOW) <= base + TotpService.WINDOW) return u;
+        }
+        return null;
+    }
+
+    private void flow(VUser u) throws Exception {
+        String token = loginAndVerify(u, "login", "totp-verify");
+        call("me", "GET", "/api/auth/me", token, null, 200);
+        String code = call("voice/challenge", "POST", "/api/voice/challenge", token, null, 200).get("code").asText();
+        JsonNode res = call("verify", "POST", "/api/verify", null,
+                Map.of("code", code, "pin", PIN, "alexaUserId", u.alexaUserId, "deviceId", "load"), 200);
+        if (!res.path("success").asBoolean()) throw new IllegalStateException("verify: " + res);
+        call("voice/finalize", "POST", "/api/voice/finalize", token, null, 200);
+    }
+
+    private String loginAndVerify(VUser u, String loginName, String verifyName) throws Exception {
+        String tmp = call(loginName, "POST", "/api/auth/login", null,
+                Map.of("email", u.email, "password", PASSWORD), 200).get("tmpToken").asText();
+        long base = Instant.now().getEpochSecond() / TotpService.STEP_SECONDS;
+        long step = Math.max(u.lastStep + 1, base - TotpService.WINDOW);
+        u.lastStep = step;
+        String code = String.format("%06d", totp(u.secret, step));
+        return call(verifyName, "POST", "/api/auth/totp-verify", null,
+                Map.of("tmpToken", tmp, "code", code), 200).get("token").asText();
+    }
+
+    // ---------- HTTP ----------
+
+    private JsonNode call(String name, String method, String path, String bearer,
+                          Object body, int expected) throws Exception {
+        HttpRequest.Builder rb = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Accept", "application/json");
+        if (bearer != null) rb.header("Authorization", "Bearer " + bearer);
+        if (body != null) {
+            rb.header("Content-Type", "application/json")
+              .method(method, HttpRequest.BodyPublishers.ofByteArray(JSON.writeValueAsBytes(body)));
+        } else {
+            rb.method(method, HttpRequest.BodyPublishers.noBody());
+        }
+        long t0 = System.nanoTime();
+        HttpResponse<byte[]> res;
+        try {
+            res = http.send(rb.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (Exception e) {
+            stats.record(name, System.nanoTime() - t0, false);
+            throw e;
+        }
+        boolean ok = res.statusCode() == expected;
+        stats.record(name, System.nanoTime() - t0, ok);
+        if (!ok) {
+            throw new IllegalStateException(name + ": HTTP " + res.statusCode() + " " + new String(res.body()));
+        }
+        return JSON.readTree(res.body());
+    }
+
+    // ---------- TOTP (RFC 6238, SHA1, 6 Stellen) ----------
+
+    private static int totp(String secretBase32, long step) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA1");
+        mac.init(new SecretKeySpec(TotpService.base32Decode(secretBase32), "HmacSHA1"));
+        byte[] h = mac.doFinal(ByteBuffer.allocate(8).putLong(step).array());
+        int o = h[h.length - 1] & 0x0f;
+        int bin = ((h[o] & 0x7f) << 24) | ((h[o + 1] & 0xff) << 16) | ((h[o + 2] & 0xff) << 8) | (h[o + 3] & 0xff);
+        return bin % 1_000_000;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.pwm.load;
+
+import com.example.pwm.repo.UserAccountRepository;
+import com.example.pwm.service.EmailKeyFilter;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Lookup-Pfade bei wachsender User-Zahl (Default 1k → 10k → 100k → 1M):
+ * <ul>
+ *   <li>{@code alexa-lookup}: {@code findByAlexaUserId} für zufällige verknüpfte User (Index statt findAll)</li>
+ *   <li>{@code email-filter}: Neuaufbau des Bloom-Filters und gemessene False-Positive-Rate für unbekannte Adressen</li>
+ *   <li>{@code login-unknown}: {@code POST /api/auth/login} mit unbekannter Adresse, sollte vom Filter ohne DB beantwortet werden</li>
+ * </ul>
+ * User werden per {@code generate_series} direkt in die Tabelle geschrieben (ohne Passwort/TOTP), sonst dauert
+ * das Anlegen von 1M Usern über HTTP Stunden. System-Properties: load.scales, load.samples (20000).
+ */
+public final class ScaleTest {
+
+    private final DataSource ds;
+    private final UserAccountRepository users;
+    private final EmailKeyFilter emailFilter;
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final String baseUrl;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private int seeded;
+
+    private ScaleTest(ConfigurableApplicationContext app) {
+        this.ds = app.getBean(DataSource.class);
+        this.users = app.getBean(UserAccountRepository.class);
+        this.emailFilter = app.getBean(EmailKeyFilter.class);
+        this.baseUrl = "http://127.0.0.1:" + app.getEnvironment().getProperty("local.server.port");
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] scales = Arrays.stream(System.getProperty("load.scales", "1000,10000,100000,1000000").split(","))
+                .mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+        int samples = Integer.getInteger("load.samples", 20_000);
+
+        // eine Instanz: hier darf der E-Mail-Filter an sein (Default aus)
+        if (System.getProperty("app.email-filter.enabled") == null) System.setProperty("app.email-filter.enabled", "true");
+        try (EmbeddedPostgres pg = EmbeddedPostgres.builder().start();
+             ConfigurableApplicationContext app = LoadTest.startApp(pg, args)) {
+            ScaleTest t = new ScaleTest(app);
+            System.out.printf(Locale.ROOT, "%-9s %-16s %9s %9s %9s %9s %s%n",
+                    "users", "messung", "n", "p50 ms", "p99 ms", "max ms", "");
+            for (int n : scales) {
+                t.seedTo(n);
+                t.measure(n, samples);
+            }
+        }
+    }
+
+    /** Füllt users bis auf {@code n} Zeilen auf; jeder User ist mit {@code scale-<run>-<i>} bei Alexa verknüpft. */
+    private void seedTo(int n) throws Exception {
+        if (n <= seeded) return;
+        long t0 = System.nanoTime();
+        try (Connection c = ds.getConnection();
+             PreparedStatement ps = c.prepareStatement("""
+                     insert into users (id, email, email_key, totp_verified, created_at, alexa_user_id, voice_failed_attempts)
+                     select gen_random_uuid(), 'scale-' || ? || '-' || i || '@example.test',
+                            'scale-' || ? || '-' || i || '@example.test', true, now(), 'scale-' || ? || '-' || i, 0
+                     from generate_series(?, ?) i
+                     """);
+             Statement st = c.createStatement()) {
+            ps.setString(1, runId);
+            ps.setString(2, runId);
+            ps.setString(3, runId);
+            ps.setInt(4, seeded);
+            ps.setInt(5, n - 1);
+            ps.executeUpdate();
+            st.execute("analyze users");
+        }
+        System.out.printf(Locale.ROOT, "# %d User angelegt in %d ms%n", n - seeded, (System.nanoTime() - t0) / 1_000_000);
+        seeded = n;
+    }
+
+    private void measure(int n, int samples) throws Exception {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+
+        // Warmup, damit JIT und Connection-Pool nicht in die erste Stufe fallen
+        for (int i = 0; i < 1000; i++) users.findByAlexaUserId("scale-" + runId + "-" + rnd.nextInt(n));
+        long[] lookup = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            String id = "scale-" + runId + "-" + rnd.nextInt(n);
+            long t0 = System.nanoTime();
+            boolean found = users.findByAlexaUserId(id).isPresent();
+            lookup[i] = System.nanoTime() - t0;
+            if (!found) throw new IllegalStateException("User " + id + " fehlt");
+        }
+        print(n, "alexa-lookup", lookup, "");
+
+        long t0 = System.nanoTime();
+        emailFilter.rebuild();
+        long rebuild = System.nanoTime() - t0;
+        int falsePositives = 0;
+        long[] probe = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            String key = "unknown-" + runId + "-" + i + "@example.test";
+            long p0 = System.nanoTime();
+            if (emailFilter.mightExist(key)) falsePositives++;
+            probe[i] = System.nanoTime() - p0;
+        }
+        print(n, "email-filter", probe, String.format(Locale.ROOT, "rebuild %d ms, fp %.3f %%",
+                rebuild / 1_000_000, 100.0 * falsePositives / samples));
+
+        int requests = Math.min(samples, 2000);
+        long[] login = new long[requests];
+        for (int i = 0; i < requests; i++) {
+            String body = "{\"email\":\"nobody-" + runId + "-" + i + "@example.test\",\"password\":\"x\"}";
+            HttpRequest req = HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/login"))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            long l0 = System.nanoTime();
+            int status = http.send(req, HttpResponse.BodyHandlers.discarding()).statusCode();
+            login[i] = System.nanoTime() - l0;
+            if (status != 401) throw new IllegalStateException("login-unknown: HTTP " + status);
+        }
+        print(n, "login-unknown", login, "");
+    }
+
+    private static void print(int n, String name, long[] nanos, String note) {
+        Arrays.sort(nanos);
+        System.out.printf(Locale.ROOT, "%-9d %-16s %9d %9.3f %9.3f %9.3f %s%n", n, name, nanos.length,
+                ms(nanos[nanos.length / 2]), ms(nanos[(int) Math.ceil(nanos.length * 0.99) - 1]),
+                ms(nanos[nanos.length - 1]), note);
+    }
+
+    private static double ms(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.pwm.controller;
+
+import com.example.pwm.repo.AccountView;
+import com.example.pwm.repo.UserAccountRepository;
+import com.example.pwm.repo.VoiceChallengeView;
+import com.example.pwm.repo.VoiceLinkCodeView;
+import com.example.pwm.service.VoiceAuthService;
+import org.dataloader.DataLoader;
+import org.springframework.graphql.data.method.annotation.BatchMapping;
+import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.graphql.data.method.annotation.SchemaMapping;
+import org.springframework.graphql.execution.BatchLoaderRegistry;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * GraphQL-Sicht auf Konto und Voice-Status ({@code /graphql}, Schema in {@code graphql/schema.graphqls}).
+ * Listen werden per {@link BatchMapping} für alle Eltern einer Ebene mit einem Statement geladen, Accounts über
+ * einen DataLoader – die Zahl der Queries hängt nur von der Tiefe ab, nicht von der Zahl der Einträge.
+ * Die Tiefe begrenzt {@link GraphQlConfig}.
+ */
+@Controller
+public class AccountGraphQlController {
+
+    private final VoiceAuthService voice;
+
+    public AccountGraphQlController(UserAccountRepository users, VoiceAuthService voice, BatchLoaderRegistry loaders) {
+        this.voice = voice;
+        // pro Request ein Cache: jeder Account wird höchstens einmal gelesen, alle offenen Keys einer Ebene in einem Statement
+        loaders.forTypePair(UUID.class, AccountView.class).registerMappedBatchLoader((ids, env) ->
+                Mono.fromSupplier(() -> users.findViewsByIds(ids).stream()
+                        .collect(Collectors.toMap(AccountView::id, Function.identity()))));
+    }
+
+    @QueryMapping
+    public CompletableFuture<AccountView> me(Authentication auth, DataLoader<UUID, AccountView> accounts) {
+        return accounts.load((UUID) auth.getPrincipal());
+    }
+
+    @BatchMapping(typeName = "Account")
+    public Map<AccountView, List<VoiceChallengeView>> challenges(List<AccountView> accounts) {
+        var byUser = voice.pendingChallenges(ids(accounts, AccountView::id));
+        return accounts.stream().distinct().collect(Collectors.toMap(Function.identity(),
+                a -> byUser.getOrDefault(a.id(), List.of())));
+    }
+
+    @BatchMapping(typeName = "Account")
+    public Map<AccountView, List<VoiceLinkCodeView>> linkCodes(List<AccountView> accounts) {
+        var byUser = voice.activeLinkCodes(ids(accounts, AccountView::id));
+        return accounts.stream().distinct().collect(Collectors.toMap(Function.identity(),
+                a -> byUser.getOrDefault(a.id(), List.of())));
+    }
+
+    // Rückverweise über die FK-Spalte in den Views statt über VoiceChallenge.user (kein Lazy-Load);
+    // der DataLoader hat den Account meist schon von "me" im Cache.
+
+    @SchemaMapping(typeName = "VoiceChallenge")
+    public CompletableFuture<AccountView> account(VoiceChallengeView challenge, DataLoader<UUID, AccountView> accounts) {
+        return accounts.load(challenge.userId());
+    }
+
+    @SchemaMapping(typeName = "VoiceLinkCode", field = "account")
+    public CompletableFuture<AccountView> linkCodeAccount(VoiceLinkCodeView code, DataLoader<UUID, AccountView> accounts) {
+        return accounts.load(code.userId());
+    }
+
+    private static <T> Set<UUID> ids(List<T> items, Function<T, UUID> id) {
+        return items.stream().map(id).collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+}
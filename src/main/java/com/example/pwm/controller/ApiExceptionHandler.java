@@ -0,0 +1,24 @@
+package com.example.pwm.controller;
+
+import com.example.pwm.service.HashingSaturatedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.Map;
+
+@RestControllerAdvice
+public class ApiExceptionHandler {
+
+    @ExceptionHandler(HashingSaturatedException.class)
+    public ResponseEntity<?> hashingSaturated(HashingSaturatedException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header("Retry-After", String.valueOf(ex.getRetryAfterSeconds()))
+                .body(Map.of(
+                        "error", "busy",
+                        "message", "Server ausgelastet. Bitte später erneut versuchen.",
+                        "retryAfterSeconds", ex.getRetryAfterSeconds()
+                ));
+    }
+}
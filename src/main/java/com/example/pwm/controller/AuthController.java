@@ -2,18 +2,22 @@ package com.example.pwm.controller;
 
 import com.example.pwm.entity.UserAccount;
 import com.example.pwm.repo.UserAccountRepository;
-import com.example.pwm.service.CryptoService;
+import com.example.pwm.security.RateLimiter;
+import com.example.pwm.service.AuthMetrics;
+import com.example.pwm.service.EnvelopeCrypto;
+import com.example.pwm.service.EmailKeyFilter;
 import com.example.pwm.service.JwtService;
+import com.example.pwm.service.PasswordHashingService;
+import com.example.pwm.service.SessionService;
+import com.example.pwm.service.TotpService;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
 import java.net.URI;
 import java.net.URLEncoder;
-import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.security.SecureRandom;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
@@ -24,10 +28,14 @@ import java.util.*;
 public class AuthController {
 
     private final UserAccountRepository users;
-    private final PasswordEncoder encoder;
+    private final PasswordHashingService hashing;
     private final JwtService jwt;
-    private final CryptoService crypto;
-    private final SecureRandom rnd = new SecureRandom();
+    private final EnvelopeCrypto crypto;
+    private final TotpService totp;
+    private final RateLimiter limiter;
+    private final EmailKeyFilter emailFilter;
+    private final AuthMetrics metrics;
+    private final SessionService sessions;
 
    
     private static final int FAILS_PER_TIER = 3;
@@ -35,31 +43,36 @@ public class AuthController {
     private static final Duration MAX_LOCK = Duration.ofHours(24);
 
     public AuthController(UserAccountRepository users,
-                          PasswordEncoder encoder,
+                          PasswordHashingService hashing,
                           JwtService jwt,
-                          CryptoService crypto) {
+                          EnvelopeCrypto crypto,
+                          TotpService totp,
+                          RateLimiter limiter,
+                          EmailKeyFilter emailFilter,
+                          AuthMetrics metrics,
+                          SessionService sessions) {
         this.users = users;
-        this.encoder = encoder;
+        this.hashing = hashing;
         this.jwt = jwt;
         this.crypto = crypto;
+        this.totp = totp;
+        this.limiter = limiter;
+        this.emailFilter = emailFilter;
+        this.metrics = metrics;
+        this.sessions = sessions;
     }
 
 
     public record RegisterReq(String email, String password) {}
     public record LoginReq(String email, String password) {}
     public record TmpVerifyReq(String tmpToken, String code) {}
+    public record RefreshReq(String refreshToken) {}
 
 
     private static boolean looksLikeEmail(String v) {
         return v != null && v.matches("(?i)^\\S+@\\S+\\.\\S+$");
     }
 
-    private String newTotpSecretBase32() {
-        byte[] raw = new byte[20];
-        rnd.nextBytes(raw);
-        return base32Encode(raw);
-    }
-
     private String buildOtpUri(String issuer, String accountEmail, String base32Secret) {
         String label = url(issuer) + ":" + url(accountEmail);
         return "otpauth://totp/" + label +
@@ -72,90 +85,17 @@ public class AuthController {
         return URLEncoder.encode(s, StandardCharsets.UTF_8);
     }
 
-    private static String base32Encode(byte[] data) {
-        if (data == null || data.length == 0) return "";
-        final char[] ALPH = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567".toCharArray();
-        StringBuilder out = new StringBuilder((data.length * 8 + 4) / 5);
-        int buffer = 0, bitsLeft = 0;
-        for (byte b : data) {
-            buffer = (buffer << 8) | (b & 0xFF);
-            bitsLeft += 8;
-            while (bitsLeft >= 5) {
-                out.append(ALPH[(buffer >> (bitsLeft - 5)) & 31]);
-                bitsLeft -= 5;
-            }
-        }
-        if (bitsLeft > 0) {
-            out.append(ALPH[(buffer << (5 - bitsLeft)) & 31]);
-        }
-        return out.toString();
-    }
-
-    private static byte[] base32Decode(String s) {
-        if (s == null) return new byte[0];
-        int[] map = new int[256];
-        Arrays.fill(map, -1);
-        char[] ALPH = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567".toCharArray();
-        for (int i = 0; i < ALPH.length; i++) map[ALPH[i]] = i;
-        String up = s.trim().toUpperCase(Locale.ROOT).replace("=", "");
-        int buffer = 0, bitsLeft = 0;
-        ByteBuffer out = ByteBuffer.allocate((up.length() * 5) / 8 + 1);
-        for (int i = 0; i < up.length(); i++) {
-            int v = up.charAt(i) < 256 ? map[up.charAt(i)] : -1;
-            if (v < 0) throw new IllegalArgumentException("Invalid base32 char: " + up.charAt(i));
-            buffer = (buffer << 5) | v;
-            bitsLeft += 5;
-            if (bitsLeft >= 8) {
-                out.put((byte) ((buffer >> (bitsLeft - 8)) & 0xFF));
-                bitsLeft -= 8;
-            }
-        }
-        out.flip();
-        byte[] arr = new byte[out.remaining()];
-        out.get(arr);
-        return arr;
-    }
-
-    private static int hotp(byte[] key, long counter) {
-        try {
-            javax.crypto.Mac mac = javax.crypto.Mac.getInstance("HmacSHA1");
-            mac.init(new javax.crypto.spec.SecretKeySpec(key, "HmacSHA1"));
-            byte[] msg = ByteBuffer.allocate(8).putLong(counter).array();
-            byte[] h = mac.doFinal(msg);
-            int off = h[h.length - 1] & 0x0F;
-            int bin = ((h[off] & 0x7F) << 24) | ((h[off + 1] & 0xFF) << 16) |
-                      ((h[off + 2] & 0xFF) << 8) | (h[off + 3] & 0xFF);
-            return bin % 1_000_000;
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    private static int totp(byte[] key, long ts, long stepSeconds) {
-        long counter = Math.floorDiv(ts, stepSeconds);
-        return hotp(key, counter);
-    }
-
-    private static boolean totpMatches(byte[] key, int code, long ts, long stepSeconds, int window) {
-        for (int w = -window; w <= window; w++) {
-            if (totp(key, ts + w * stepSeconds, stepSeconds) == code) return true;
-        }
-        return false;
-    }
-
-
-    private static Duration lockDurationForTier(int tier) {
-        if (tier <= 1) return BASE_LOCK;
-        Duration d = BASE_LOCK.multipliedBy(1L << (tier - 1));
-        if (d.compareTo(MAX_LOCK) > 0) return MAX_LOCK;
-        return d;
-    }
-
     private static long secondsUntil(Instant ts) {
         long s = Duration.between(Instant.now(), ts).getSeconds();
         return Math.max(0, s);
     }
 
+    private static ResponseEntity<?> tooManyRequests(long retryAfterSeconds) {
+        return ResponseEntity.status(429)
+                .header("Retry-After", String.valueOf(retryAfterSeconds))
+                .body(Map.of("error", "rate-limited", "retryAfterSeconds", retryAfterSeconds));
+    }
+
     @PostMapping("/register")
     public ResponseEntity<?> register(@RequestBody RegisterReq req) {
         if (req == null || req.email() == null || req.password() == null) {
@@ -165,25 +105,42 @@ public class AuthController {
         if (!looksLikeEmail(email)) {
             return ResponseEntity.badRequest().body(Map.of("error", "ungültige E-Mail"));
         }
-        if (users.existsByEmailIgnoreCase(email)) {
-            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "E-Mail bereits registriert"));
+        // immer die DB fragen: der Filter kennt Registrierungen anderer Instanzen nicht, und BCrypt kostet hier ohnehin mehr
+        String emailKey = UserAccount.emailKey(email);
+        if (users.existsByEmailKey(emailKey)) {
+            return emailTaken();
         }
 
-        String secretB32 = newTotpSecretBase32();
+        String secretB32 = totp.newSecretBase32();
+        EnvelopeCrypto.NewDataKey dek = crypto.newDataKey();
         UserAccount u = new UserAccount();
         u.setEmail(email);
-        u.setPasswordHash(encoder.encode(req.password()));
-        u.setTotpSecretEnc(crypto.encrypt(secretB32));
+        u.setPasswordHash(hashing.encode(req.password()));
+        u.setDekWrapped(dek.wrapped());
+        u.setDekKekVersion(dek.kekVersion());
+        u.setTotpSecretEnc(crypto.encrypt(dek.key(), secretB32));
         u.setTotpVerified(false);
         u.setVoiceFailedAttempts(0);
         u.setVoiceLockUntil(null);
-        users.save(u);
+        try {
+            users.save(u);
+        } catch (DataIntegrityViolationException ex) {
+            // parallele Registrierung derselben Adresse scheitert am Unique-Index
+            if (users.existsByEmailKey(emailKey)) return emailTaken();
+            throw ex;
+        }
+        crypto.remember(u.getId(), dek.key());
+        emailFilter.add(emailKey);
 
         String uri = buildOtpUri("PWM", email, secretB32);
         return ResponseEntity.created(URI.create("/api/auth/register"))
                 .body(Map.of("otpauthUrl", uri, "secretBase32", secretB32));
     }
 
+    private static ResponseEntity<?> emailTaken() {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "E-Mail bereits registriert"));
+    }
+
     @PostMapping("/login")
     public ResponseEntity<?> login(@RequestBody LoginReq req) {
         if (req == null || req.email() == null || req.password() == null) {
@@ -192,12 +149,27 @@ public class AuthController {
         String email = req.email().trim();
         String pw = req.password();
 
-        UserAccount u = users.findByEmail(email).orElse(null);
+        String emailKey = UserAccount.emailKey(email);
+
+        long throttled = limiter.tryAcquireAccount("login:" + emailKey);
+        if (throttled > 0) {
+            metrics.rateLimited(AuthMetrics.LOGIN);
+            return tooManyRequests(throttled);
+        }
+
+        // Sicher unbekannte Adresse: ohne DB-Roundtrip abweisen
+        if (!emailFilter.mightExist(emailKey)) {
+            metrics.badCredentials(AuthMetrics.LOGIN);
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Bad credentials"));
+        }
+
+        UserAccount u = users.findByEmailKey(emailKey).orElse(null);
 
         if (u != null && u.getVoiceLockUntil() != null) {
             Instant lockUntil = u.getVoiceLockUntil();
             if (lockUntil.isAfter(Instant.now())) {
                 long left = secondsUntil(lockUntil);
+                metrics.locked(AuthMetrics.LOGIN);
                 return ResponseEntity.status(429) 
                         .header("Retry-After", String.valueOf(left))
                         .body(Map.of(
@@ -208,24 +180,22 @@ public class AuthController {
             }
         }
 
-        if (u == null || !encoder.matches(pw, u.getPasswordHash())) {
+        if (u == null || !hashing.matches(pw, u.getPasswordHash())) {
             if (u != null) {
-                int fails = (u.getVoiceFailedAttempts() == 0 ? 0 : u.getVoiceFailedAttempts()) + 1;
-                u.setVoiceFailedAttempts(fails);
-
-                if (fails % FAILS_PER_TIER == 0) {
-                    int tier = fails / FAILS_PER_TIER;         
-                    Duration lock = lockDurationForTier(tier);    
-                    u.setVoiceLockUntil(Instant.now().plus(lock));
+                // Zähler wird atomar in der DB erhöht; jeder FAILS_PER_TIER-te Fehlversuch sperrt
+                int fails = users.registerLoginFailure(u.getId(), Instant.now(), FAILS_PER_TIER,
+                        BASE_LOCK.getSeconds(), MAX_LOCK.getSeconds()).orElse(0);
+                if (fails > 0 && fails % FAILS_PER_TIER == 0) {
+                    metrics.lockout(AuthMetrics.LOGIN);
                 }
-                users.save(u);
             }
+            metrics.badCredentials(AuthMetrics.LOGIN);
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Bad credentials"));
         }
 
-        u.setVoiceFailedAttempts(0);
-        u.setVoiceLockUntil(null);
-        users.save(u);
+        if (u.getVoiceFailedAttempts() != 0 || u.getVoiceLockUntil() != null) {
+            users.resetLoginFailures(u.getId());
+        }
 
         String tmp = jwt.issueTmpToken(u.getId(), Duration.ofMinutes(5));
         return ResponseEntity.ok(Map.of("tmpToken", tmp, "userId", u.getId(), "email", u.getEmail()));
@@ -239,58 +209,90 @@ public class AuthController {
 
         UUID uid;
         try {
-            uid = jwt.requireUid(req.tmpToken()); 
+            uid = jwt.requireTmpUid(req.tmpToken());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Bad credentials"));
         }
 
+        long throttled = limiter.tryAcquireAccount("totp:" + uid);
+        if (throttled > 0) {
+            metrics.rateLimited(AuthMetrics.TOTP);
+            return tooManyRequests(throttled);
+        }
+
         UserAccount u = users.findById(uid).orElse(null);
         if (u == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Bad credentials"));
         }
 
-        String secretB32 = crypto.decrypt(u.getTotpSecretEnc());
-        byte[] key = base32Decode(secretB32);
+        String secretB32 = crypto.decrypt(u.getId(), u.getTotpSecretEnc());
         int provided;
         try {
             provided = Integer.parseInt(req.code().replaceAll("\\D+", ""));
         } catch (NumberFormatException e) {
+            metrics.badCode(AuthMetrics.TOTP);
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Bad credentials"));
         }
-        boolean ok = totpMatches(key, provided, Instant.now().getEpochSecond(), 30, 1);
+        boolean ok = totp.verify(u.getId(), secretB32, provided);
         if (!ok) {
+            metrics.badCode(AuthMetrics.TOTP);
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Bad credentials"));
         }
 
-        u.setTotpVerified(true);
-        users.save(u);
+        // gezieltes UPDATE statt save(u): ein Merge schriebe die ganze, evtl. veraltete Zeile zurück
+        if (!u.getTotpVerified()) {
+            users.markTotpVerified(u.getId());
+        }
 
-        String token = jwt.issueToken(u.getId(), Duration.ofHours(12));
+        SessionService.Tokens tokens = sessions.start(u.getId());
         boolean alexaLinked = u.getAlexaUserId() != null && !u.getAlexaUserId().isBlank();
         boolean voicePinSet  = u.getVoicePinHash() != null && !u.getVoicePinHash().isBlank();
         return ResponseEntity.ok(Map.of(
-                "token", token,
+                "token", tokens.accessToken(),
+                "refreshToken", tokens.refreshToken(),
+                "expiresIn", tokens.expiresInSeconds(),
                 "email", u.getEmail(),
                 "alexaLinked", alexaLinked,
                 "voicePinSet", voicePinSet
         ));
     }
 
+    /** Tauscht ein Refresh-Token gegen ein neues Paar; das alte ist danach verbraucht. */
+    @PostMapping("/refresh")
+    public ResponseEntity<?> refresh(@RequestBody RefreshReq req) {
+        var tokens = sessions.refresh(req == null ? null : req.refreshToken()).orElse(null);
+        if (tokens == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "invalid-refresh-token"));
+        }
+        return ResponseEntity.ok(Map.of(
+                "token", tokens.accessToken(),
+                "refreshToken", tokens.refreshToken(),
+                "expiresIn", tokens.expiresInSeconds()
+        ));
+    }
+
+    /** Beendet die Session: Refresh-Token ungültig, laufende Access-Tokens werden abgewiesen. */
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestBody RefreshReq req) {
+        sessions.logout(req == null ? null : req.refreshToken());
+        return ResponseEntity.noContent().build();
+    }
+
     @GetMapping("/me")
     public ResponseEntity<?> me(org.springframework.security.core.Authentication auth) {
         if (auth == null || auth.getPrincipal() == null) {
             return ResponseEntity.status(401).body(Map.of("error", "unauthorized"));
         }
         java.util.UUID userId = (java.util.UUID) auth.getPrincipal();
-        var u = users.findById(userId).orElseThrow();
-
-        boolean alexaLinked = u.getAlexaUserId() != null && !u.getAlexaUserId().isBlank();
-        boolean voicePinSet = u.getVoicePinHash() != null && !u.getVoicePinHash().isBlank();
+        var status = users.findStatusById(userId).orElse(null);
+        if (status == null) {
+            return ResponseEntity.status(401).body(Map.of("error", "unauthorized"));
+        }
 
         return ResponseEntity.ok(Map.of(
-                "email", u.getEmail(),
-                "alexaLinked", alexaLinked,
-                "voicePinSet", voicePinSet
+                "email", status.email(),
+                "alexaLinked", status.alexaLinked(),
+                "voicePinSet", status.voicePinSet()
         ));
     }
 
@@ -0,0 +1,17 @@
+package com.example.pwm.controller;
+
+import graphql.analysis.MaxQueryDepthInstrumentation;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class GraphQlConfig {
+
+    /** Account → challenges → account → … wäre sonst beliebig tief schachtelbar. */
+    static final int MAX_QUERY_DEPTH = 6;
+
+    @Bean
+    public MaxQueryDepthInstrumentation maxQueryDepthInstrumentation() {
+        return new MaxQueryDepthInstrumentation(MAX_QUERY_DEPTH);
+    }
+}
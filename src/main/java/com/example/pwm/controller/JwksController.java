@@ -0,0 +1,62 @@
+package com.example.pwm.controller;
+
+import com.example.pwm.service.JwtKeyRing;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Öffentliche Signaturschlüssel als JWKS, damit andere Dienste Access-Tokens lokal prüfen können
+ * (Schlüssel per {@code kid} aus dem Token-Header wählen, nur {@code ES256} akzeptieren).
+ * Der Inhalt ändert sich nur mit einem Neustart; Clients dürfen ihn {@code app.jwt.jwks-max-age} lang cachen.
+ */
+@RestController
+public class JwksController {
+
+    private final byte[] body;
+    private final String etag;
+    private final CacheControl cacheControl;
+
+    public JwksController(JwtKeyRing keys,
+                          ObjectMapper mapper,
+                          @Value("${app.jwt.jwks-max-age:PT5M}") Duration maxAge) throws JsonProcessingException {
+        this.body = mapper.writeValueAsBytes(Map.of("keys", keys.publicJwks()));
+        this.etag = "\"" + sha256(body) + "\"";
+        this.cacheControl = CacheControl.maxAge(maxAge).cachePublic();
+    }
+
+    @GetMapping("/.well-known/jwks.json")
+    public ResponseEntity<byte[]> jwks(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null && ifNoneMatch.contains(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(cacheControl)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-256").digest(data);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(d);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
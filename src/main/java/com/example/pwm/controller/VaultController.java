@@ -0,0 +1,240 @@
+package com.example.pwm.controller;
+
+import com.example.pwm.entity.VaultItem;
+import com.example.pwm.repo.VaultState;
+import com.example.pwm.service.SyncCursor;
+import com.example.pwm.service.VaultCursor;
+import com.example.pwm.service.VaultService;
+import com.example.pwm.service.VaultTransfer;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/api/vault")
+public class VaultController {
+
+    private final VaultService vault;
+    private final VaultTransfer transfer;
+    private final ObjectMapper mapper;
+    private final int maxItemBytes;
+    private final int maxPageSize;
+
+    public VaultController(VaultService vault,
+                           VaultTransfer transfer,
+                           ObjectMapper mapper,
+                           @Value("${app.vault.max-item-bytes:65536}") int maxItemBytes,
+                           @Value("${app.vault.max-page-size:5000}") int maxPageSize) {
+        this.vault = vault;
+        this.transfer = transfer;
+        this.mapper = mapper;
+        this.maxItemBytes = maxItemBytes;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Keyset-paginierte Liste: {@code {"items":[{id,createdAt,updatedAt,data}], "nextCursor": "..."|null}}.
+     * Die Antwort wird gestreamt; gelesen und entschlüsselt wird batchweise.
+     */
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> list(Authentication auth,
+                                                      @RequestParam(required = false) String cursor,
+                                                      @RequestParam(defaultValue = "1000") int limit) {
+        UUID userId = (UUID) auth.getPrincipal();
+        if (limit < 1 || limit > maxPageSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit muss zwischen 1 und " + maxPageSize + " liegen");
+        }
+        VaultCursor after;
+        try {
+            after = cursor == null || cursor.isBlank() ? null : VaultCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ungültiger Cursor");
+        }
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator gen = mapper.getFactory().createGenerator(out)) {
+                gen.writeStartObject();
+                gen.writeArrayFieldStart("items");
+                VaultCursor next = vault.readPage(userId, after, limit, (rows, json) -> {
+                    VaultTransfer.writeItems(gen, rows, json);
+                    gen.flush();
+                });
+                gen.writeEndArray();
+                gen.writeStringField("nextCursor", next == null ? null : next.encode());
+                gen.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Delta-Sync: alle seit {@code since} angelegten, geänderten und gelöschten Einträge (Tombstones mit
+     * {@code deleted:true}). ETag ist die aktuelle Tresor-Version; passt {@code If-None-Match}, gibt es 304,
+     * ohne Item-Zeilen zu lesen. {@code fullResync:true} heißt: lokalen Stand verwerfen (Tombstones zu
+     * {@code since} sind bereits aufgeräumt). Der Client merkt sich {@code version} der letzten Seite.
+     */
+    @GetMapping("/sync")
+    public ResponseEntity<StreamingResponseBody> sync(Authentication auth,
+                                                      @RequestParam(defaultValue = "0") long since,
+                                                      @RequestParam(required = false) String cursor,
+                                                      @RequestParam(defaultValue = "1000") int limit,
+                                                      @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        UUID userId = (UUID) auth.getPrincipal();
+        if (limit < 1 || limit > maxPageSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit muss zwischen 1 und " + maxPageSize + " liegen");
+        }
+        VaultState state = vault.state(userId);
+        String etag = "\"" + state.version() + "\"";
+        if (cursor == null && etagMatches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        boolean fullResync = since < 0 || since > state.version() || (since > 0 && since < state.purgedVersion());
+        long from = fullResync ? 0 : since;
+        SyncCursor after;
+        try {
+            after = cursor == null || cursor.isBlank() ? SyncCursor.since(from) : SyncCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ungültiger Cursor");
+        }
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator gen = mapper.getFactory().createGenerator(out)) {
+                gen.writeStartObject();
+                gen.writeNumberField("version", state.version());
+                gen.writeBooleanField("fullResync", fullResync);
+                gen.writeArrayFieldStart("changes");
+                // beim Erst-Sync interessieren Tombstones nicht
+                SyncCursor next = vault.readChanges(userId, after, from > 0, limit, (rows, json) -> {
+                    VaultTransfer.writeItems(gen, rows, json);
+                    gen.flush();
+                });
+                gen.writeEndArray();
+                gen.writeStringField("nextCursor", next == null ? null : next.encode());
+                gen.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().eTag(etag).contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    @PostMapping
+    public ResponseEntity<?> create(Authentication auth, @RequestBody JsonNode data) throws JsonProcessingException {
+        UUID userId = (UUID) auth.getPrincipal();
+        String json = checkedJson(data);
+        if (json == null) return invalidItem();
+        VaultItem v = vault.create(userId, json);
+        return ResponseEntity.created(URI.create("/api/vault/" + v.getId()))
+                .body(Map.of("id", v.getId(), "version", v.getVersion(),
+                        "createdAt", v.getCreatedAt(), "updatedAt", v.getUpdatedAt()));
+    }
+
+    /** Bulk-Import aus JSON (Array oder Export-Format) oder CSV mit Kopfzeile, streamend in Batches. */
+    @PostMapping(path = "/import", consumes = {MediaType.APPLICATION_JSON_VALUE, "text/csv"})
+    public ResponseEntity<?> importItems(Authentication auth,
+                                         @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                         InputStream body) {
+        UUID userId = (UUID) auth.getPrincipal();
+        try {
+            VaultTransfer.ImportResult r = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.APPLICATION_JSON)
+                    ? transfer.importJson(userId, body)
+                    : transfer.importCsv(userId, body);
+            return ResponseEntity.ok(Map.of("imported", r.imported(), "skipped", r.skipped()));
+        } catch (VaultTransfer.ImportException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage(), "imported", e.getImported()));
+        }
+    }
+
+    /**
+     * Streamender Export: {@code format=json} (Listenformat, mit {@code encrypted=true} nur {@code dataEnc})
+     * oder {@code format=csv} (entschlüsselt, Spalten über {@code columns}).
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(Authentication auth,
+                                                        @RequestParam(defaultValue = "json") String format,
+                                                        @RequestParam(defaultValue = "false") boolean encrypted,
+                                                        @RequestParam(defaultValue = "name,url,username,password,notes,totp") List<String> columns) {
+        UUID userId = (UUID) auth.getPrincipal();
+        ContentDisposition attachment;
+        StreamingResponseBody body;
+        MediaType type;
+        switch (format) {
+            case "json" -> {
+                body = out -> transfer.exportJson(userId, !encrypted, out);
+                type = MediaType.APPLICATION_JSON;
+                attachment = ContentDisposition.attachment().filename("vault.json").build();
+            }
+            case "csv" -> {
+                if (encrypted) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "CSV nur unverschlüsselt");
+                body = out -> transfer.exportCsv(userId, columns, out);
+                type = new MediaType("text", "csv", StandardCharsets.UTF_8);
+                attachment = ContentDisposition.attachment().filename("vault.csv").build();
+            }
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format muss json oder csv sein");
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, attachment.toString())
+                .contentType(type)
+                .body(body);
+    }
+
+    @PutMapping("/{id}")
+    public ResponseEntity<?> update(Authentication auth, @PathVariable UUID id, @RequestBody JsonNode data)
+            throws JsonProcessingException {
+        UUID userId = (UUID) auth.getPrincipal();
+        String json = checkedJson(data);
+        if (json == null) return invalidItem();
+        if (!vault.update(userId, id, json)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "not-found"));
+        }
+        return ResponseEntity.ok(Map.of("ok", true));
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> delete(Authentication auth, @PathVariable UUID id) {
+        UUID userId = (UUID) auth.getPrincipal();
+        if (!vault.delete(userId, id)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "not-found"));
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    /** Serialisiertes JSON-Objekt oder {@code null}, wenn kein Objekt bzw. zu groß. */
+    private String checkedJson(JsonNode data) throws JsonProcessingException {
+        if (data == null || !data.isObject()) return null;
+        String json = mapper.writeValueAsString(data);
+        return json.getBytes(StandardCharsets.UTF_8).length > maxItemBytes ? null : json;
+    }
+
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String c = candidate.trim();
+            if (c.startsWith("W/")) c = c.substring(2);
+            if (c.equals(etag) || c.equals("*")) return true;
+        }
+        return false;
+    }
+
+    private ResponseEntity<?> invalidItem() {
+        return ResponseEntity.badRequest().body(Map.of("error",
+                "Eintrag muss ein JSON-Objekt mit höchstens " + maxItemBytes + " Bytes sein"));
+    }
+}
@@ -1,18 +1,22 @@
 package com.example.pwm.controller;
 
-import com.example.pwm.entity.UserAccount;
 import com.example.pwm.repo.UserAccountRepository;
-import com.example.pwm.service.JwtService;
+import com.example.pwm.security.RateLimiter;
+import com.example.pwm.service.AuthMetrics;
+import com.example.pwm.service.PasswordHashingService;
+import com.example.pwm.service.SessionService;
+import com.example.pwm.service.VoiceChallengeEvents;
 import com.example.pwm.service.VoiceAuthService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.time.Duration;
 import java.util.Map;
 import java.util.UUID;
 
@@ -23,15 +27,23 @@ public class VoiceAuthController {
     private static final Logger log = LoggerFactory.getLogger(VoiceAuthController.class);
 
     private final VoiceAuthService voice;
-    private final JwtService jwt;
     private final UserAccountRepository users;
-    private final PasswordEncoder encoder;
-
-    public VoiceAuthController(VoiceAuthService voice, JwtService jwt, UserAccountRepository users, PasswordEncoder encoder) {
+    private final PasswordHashingService hashing;
+    private final RateLimiter limiter;
+    private final VoiceChallengeEvents events;
+    private final AuthMetrics metrics;
+    private final SessionService sessions;
+
+    public VoiceAuthController(VoiceAuthService voice, UserAccountRepository users,
+                               PasswordHashingService hashing, RateLimiter limiter, VoiceChallengeEvents events,
+                               AuthMetrics metrics, SessionService sessions) {
         this.voice = voice;
-        this.jwt = jwt;
         this.users = users;
-        this.encoder = encoder;
+        this.hashing = hashing;
+        this.limiter = limiter;
+        this.events = events;
+        this.metrics = metrics;
+        this.sessions = sessions;
     }
 
     @PostMapping("/voice/link/start")
@@ -43,6 +55,9 @@ public class VoiceAuthController {
 
     @PostMapping("/voice/link/complete")
     public Map<String,Object> completeLink(@RequestBody LinkReq req) {
+        if (req.alexaUserId() == null || req.alexaUserId().isBlank()) {
+            return Map.of("ok", false, "message", "invalid-or-expired");
+        }
         var exists = users.findByAlexaUserId(req.alexaUserId());
         if (exists.isPresent()) {
             return Map.of("ok", false, "message", "alexa-id-already-linked");
@@ -56,25 +71,51 @@ public class VoiceAuthController {
     @PostMapping("/voice/challenge")
     public Map<String,Object> startChallenge(Authentication auth) {
         UUID userId = (UUID) auth.getPrincipal();
-        String code = voice.createChallenge(userId);
+        String code = voice.createChallenge(userId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.UNAUTHORIZED));
         return Map.of("code", code, "ttlSeconds", 180);
     }
 
+    /** SSE: genau ein "verified"-Event, sobald Alexa die Challenge bestätigt hat; danach einmal finalize aufrufen. */
+    @GetMapping(path = "/voice/challenge/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter challengeEvents(Authentication auth) {
+        UUID userId = (UUID) auth.getPrincipal();
+        SseEmitter emitter = events.subscribe(userId);
+        if (emitter == null) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "too-many-subscribers");
+        }
+        // Bereits vor dem Subscribe verifiziert? Dann sofort melden.
+        if (voice.hasVerifiedChallenge(userId)) {
+            events.publishVerified(userId);
+        }
+        return emitter;
+    }
+
     @PostMapping("/verify")
-    public Map<String,Object> verifyFromAlexa(@RequestBody VerifyReq req) {
+    public ResponseEntity<Map<String,Object>> verifyFromAlexa(@RequestBody VerifyReq req) {
+        String alexaUserId = req.alexaUserId() == null ? "" : req.alexaUserId();
+        long throttled = limiter.tryAcquireAccount("alexa:" + alexaUserId);
+        if (throttled > 0) {
+            metrics.rateLimited(AuthMetrics.VOICE);
+            return ResponseEntity.status(429)
+                    .header("Retry-After", String.valueOf(throttled))
+                    .body(Map.of("success", false, "message", "rate-limited"));
+        }
         var res = voice.verifyFromAlexa(req.code(), req.pin(), req.alexaUserId(), req.deviceId());
-        return res;
+        return ResponseEntity.ok(res);
     }
 
     @PostMapping("/voice/finalize")
     public ResponseEntity<?> finalizeVoice(Authentication auth) {
         UUID userId = (UUID) auth.getPrincipal();
-        if (!voice.hasVerifiedChallenge(userId)) {
+        if (!voice.consumeVerifiedChallenge(userId)) {
             return ResponseEntity.badRequest().body(Map.of("error", "no-verified-challenge"));
         }
-        String token = jwt.issueToken(userId, Duration.ofHours(12));
-        voice.deleteAllChallengesOfUser(userId);
-        return ResponseEntity.ok(Map.of("token", token));
+        SessionService.Tokens tokens = sessions.start(userId);
+        return ResponseEntity.ok(Map.of(
+                "token", tokens.accessToken(),
+                "refreshToken", tokens.refreshToken(),
+                "expiresIn", tokens.expiresInSeconds()));
     }
 
     public record LinkReq(String code, String alexaUserId) {}
@@ -83,35 +124,25 @@ public class VoiceAuthController {
     public record PinReq(String pin) {}
 
     @PostMapping("/voice/pin")
-    @Transactional
     public ResponseEntity<?> setVoicePin(Authentication auth, @RequestBody PinReq req) {
         UUID userId = (UUID) auth.getPrincipal();
         if (req == null || req.pin() == null || !req.pin().matches("\\d{4,8}")) {
             return ResponseEntity.badRequest().body(Map.of("error", "pin-invalid", "message", "PIN muss 4–8 Ziffern haben."));
         }
-        UserAccount u = users.findById(userId).orElseThrow();
-        if (u.getAlexaUserId() == null || u.getAlexaUserId().isBlank()) {
+        // Erst billig prüfen, dann hashen – und kein Entity laden, nur ein gezieltes UPDATE
+        if (!users.isAlexaLinked(userId)
+                || users.updateVoicePinIfLinked(userId, hashing.encode(req.pin())) == 0) {
             return ResponseEntity.status(400).body(Map.of("error", "not-linked", "message", "Alexa ist nicht verknüpft."));
         }
-        u.setVoicePinHash(encoder.encode(req.pin()));
-        u.setVoiceFailedAttempts(0);
-        u.setVoiceLockUntil(null);
-        users.save(u);
         return ResponseEntity.ok(Map.of("ok", true));
     }
 
     @DeleteMapping("/voice/pin")
-    @Transactional
     public ResponseEntity<?> clearVoicePin(Authentication auth) {
         UUID userId = (UUID) auth.getPrincipal();
-        UserAccount u = users.findById(userId).orElseThrow();
-        if (u.getAlexaUserId() == null || u.getAlexaUserId().isBlank()) {
+        if (users.updateVoicePinIfLinked(userId, "") == 0) {
             return ResponseEntity.status(400).body(Map.of("error", "not-linked"));
         }
-        u.setVoicePinHash("");
-        u.setVoiceFailedAttempts(0);
-        u.setVoiceLockUntil(null);
-        users.save(u);
         return ResponseEntity.ok(Map.of("ok", true));
     }
 }
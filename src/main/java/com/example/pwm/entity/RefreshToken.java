@@ -0,0 +1,52 @@
+package com.example.pwm.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/** Ein Refresh-Token einer Session-Familie; jedes Token ist genau einmal einlösbar. */
+@Entity
+@Table(name = "refresh_tokens", indexes = {
+        @Index(name = "ix_refresh_tokens_family", columnList = "family_id"),
+        @Index(name = "ix_refresh_tokens_expires_at", columnList = "expires_at")
+})
+public class RefreshToken {
+
+    @Id
+    private UUID id;
+
+    @Column(name = "family_id", nullable = false)
+    private UUID familyId;
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    /** SHA-256 (hex) des Token-Secrets; das Secret selbst wird nicht gespeichert. */
+    @Column(name = "token_hash", nullable = false, length = 64)
+    private String tokenHash;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    @Column(name = "used_at")
+    private Instant usedAt;
+
+    public UUID getId() { return id; }
+    public void setId(UUID id) { this.id = id; }
+    public UUID getFamilyId() { return familyId; }
+    public void setFamilyId(UUID familyId) { this.familyId = familyId; }
+    public UUID getUserId() { return userId; }
+    public void setUserId(UUID userId) { this.userId = userId; }
+    public String getTokenHash() { return tokenHash; }
+    public void setTokenHash(String tokenHash) { this.tokenHash = tokenHash; }
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+    public Instant getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+    public Instant getUsedAt() { return usedAt; }
+    public void setUsedAt(Instant usedAt) { this.usedAt = usedAt; }
+}
@@ -0,0 +1,31 @@
+package com.example.pwm.entity;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/** Widerrufene Session; Access-Tokens mit dieser {@code sid} werden abgewiesen, bis sie ohnehin abgelaufen sind. */
+@Entity
+@Table(name = "revoked_sessions", indexes = {
+        @Index(name = "ix_revoked_sessions_expires_at", columnList = "expires_at")
+})
+public class RevokedSession {
+
+    @Id
+    @Column(name = "family_id")
+    private UUID familyId;
+
+    @Column(name = "revoked_at", nullable = false)
+    private Instant revokedAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    public UUID getFamilyId() { return familyId; }
+    public void setFamilyId(UUID familyId) { this.familyId = familyId; }
+    public Instant getRevokedAt() { return revokedAt; }
+    public void setRevokedAt(Instant revokedAt) { this.revokedAt = revokedAt; }
+    public Instant getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+}
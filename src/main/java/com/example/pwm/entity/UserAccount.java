@@ -8,11 +8,14 @@ import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.UuidGenerator;
 
 import java.time.Instant;
+import java.util.Locale;
 import java.util.UUID;
 
 @Entity
 @Table(name = "users", indexes = {
-        @Index(name = "ux_users_email", columnList = "email", unique = true)
+        @Index(name = "ux_users_email", columnList = "email", unique = true),
+        @Index(name = "ux_users_email_key", columnList = "email_key", unique = true),
+        @Index(name = "ux_users_alexa_user_id", columnList = "alexa_user_id", unique = true)
 })
 public class UserAccount {
 
@@ -29,6 +32,11 @@ public class UserAccount {
     @Column(nullable = false, unique = true, length = 320)
     private String email;
 
+    /** Normalisierte E-Mail (trim + lowercase); alle Lookups laufen über diesen Schlüssel. */
+    @Getter
+    @Column(name = "email_key", nullable = false, unique = true, length = 320)
+    private String emailKey;
+
     @Getter
     @Setter
     @Column(name = "password_hash", nullable = false, length = 255)
@@ -70,22 +78,47 @@ public class UserAccount {
     @Column(nullable = false)
     private int voiceFailedAttempts = 0;
 
+    /** Data-Key des Users, gewrappt mit Master-Key {@code dekKekVersion}; danach nur per Query geändert (Rewrap). */
+    @Getter
+    @Setter
+    @Column(name = "dek_wrapped", length = 255, updatable = false)
+    private String dekWrapped;
+
+    @Getter
+    @Setter
+    @Column(name = "dek_kek_version", updatable = false)
+    private Integer dekKekVersion;
+
+    /** Nur per UPDATE-Query gepflegt (VaultService); nie über das geladene Entity zurückschreiben. */
+    @Getter
+    @Column(name = "vault_version", nullable = false, insertable = false, updatable = false)
+    private long vaultVersion;
+
+    @Getter
+    @Column(name = "vault_purged_version", nullable = false, insertable = false, updatable = false)
+    private long vaultPurgedVersion;
+
 
     @PrePersist
     void prePersist() {
         if (createdAt == null) createdAt = Instant.now();
+        emailKey = emailKey(email);
         if (passwordHash == null) passwordHash = "";
         if (totpSecretEnc == null) totpSecretEnc = "";
-        if (alexaUserId == null) alexaUserId = "";
         if (voicePinHash == null) voicePinHash = "";
     }
 
     @PreUpdate
     void preUpdate() {
+        emailKey = emailKey(email);
         if (passwordHash == null) passwordHash = "";
         if (totpSecretEnc == null) totpSecretEnc = "";
     }
 
     public boolean getTotpVerified() { return totpVerified; }
 
+    public static String emailKey(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
 }
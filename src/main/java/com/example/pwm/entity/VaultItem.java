@@ -0,0 +1,62 @@
+package com.example.pwm.entity;
+
+import jakarta.persistence.*;
+import org.hibernate.annotations.UuidGenerator;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+@Entity
+@Table(name = "vault_items", indexes = {
+        @Index(name = "ix_vault_items_user_created", columnList = "user_id,created_at,id"),
+        @Index(name = "ix_vault_items_user_version", columnList = "user_id,version,id")
+})
+public class VaultItem {
+
+    @Id
+    @GeneratedValue
+    @UuidGenerator
+    private UUID id;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private UserAccount user;
+
+    /** Verschlüsselter JSON-Inhalt (Base64 von iv||ct||tag). */
+    @Column(name = "data_enc", nullable = false, columnDefinition = "text")
+    private String dataEnc;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    /** Stand von {@code users.vault_version} beim letzten Schreiben (Delta-Sync). */
+    @Column(nullable = false)
+    private long version;
+
+    /** Tombstone: Inhalt geleert, bleibt für den Sync bis zur Aufräumfrist stehen. */
+    @Column(nullable = false)
+    private boolean deleted;
+
+    @PrePersist
+    void prePersist() {
+        // Postgres speichert Mikrosekunden; so stimmt der Keyset-Cursor mit dem gespeicherten Wert überein
+        if (createdAt == null) createdAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        if (updatedAt == null) updatedAt = createdAt;
+    }
+
+    public UUID getId() { return id; }
+    public UserAccount getUser() { return user; }
+    public void setUser(UserAccount user) { this.user = user; }
+    public String getDataEnc() { return dataEnc; }
+    public void setDataEnc(String dataEnc) { this.dataEnc = dataEnc; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+    public boolean isDeleted() { return deleted; }
+}
@@ -8,7 +8,9 @@ import java.util.UUID;
 
 @Entity
 @Table(name = "voice_challenges", indexes = {
-        @Index(name = "ix_voice_challenge_user_code", columnList = "user_id,code")
+        @Index(name = "ix_voice_challenge_user_code", columnList = "user_id,code"),
+        @Index(name = "ix_voice_challenge_user_verified_exp", columnList = "user_id,verified,expires_at"),
+        @Index(name = "ix_voice_challenge_expires_at", columnList = "expires_at")
 })
 public class VoiceChallenge {
 
@@ -8,7 +8,9 @@ import java.util.UUID;
 
 @Entity
 @Table(name = "voice_link_codes", indexes = {
-        @Index(name = "ix_voice_link_code_code", columnList = "code", unique = true)
+        @Index(name = "ix_voice_link_code_code", columnList = "code", unique = true),
+        @Index(name = "ix_voice_link_code_expires_at", columnList = "expires_at"),
+        @Index(name = "ix_voice_link_code_user_exp", columnList = "user_id,expires_at")
 })
 public class VoiceLinkCode {
 
@@ -0,0 +1,4 @@
+package com.example.pwm.repo;
+
+/** Schlanke Read-Projektion für /api/auth/me – ohne Hashes und verschlüsselte Secrets. */
+public record AccountStatus(String email, boolean alexaLinked, boolean voicePinSet) {}
@@ -0,0 +1,13 @@
+package com.example.pwm.repo;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/** Konto-Projektion für die GraphQL-API; wie {@link AccountStatus} ohne Hashes und Secrets. */
+public record AccountView(UUID id, String email, Instant createdAt,
+                          boolean alexaLinked, boolean voicePinSet, Instant voiceLockUntil) {
+
+    public boolean voiceLocked() {
+        return voiceLockUntil != null && voiceLockUntil.isAfter(Instant.now());
+    }
+}
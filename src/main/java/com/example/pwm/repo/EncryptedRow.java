@@ -0,0 +1,6 @@
+package com.example.pwm.repo;
+
+import java.util.UUID;
+
+/** Verschlüsselter Wert samt Besitzer, für den Re-Encrypt-/Rewrap-Job. */
+public record EncryptedRow(UUID id, UUID ownerId, String enc) {}
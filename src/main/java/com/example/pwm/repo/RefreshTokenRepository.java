@@ -0,0 +1,41 @@
+package com.example.pwm.repo;
+
+import com.example.pwm.entity.RefreshToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, UUID> {
+
+    /** Vom Primary: ein gerade rotiertes Token fehlt auf einem nachhinkenden Replikat noch. */
+    @Override
+    @Transactional
+    Optional<RefreshToken> findById(UUID id);
+
+    /** Löst das Token ein; 0 = bereits benutzt (Replay oder paralleler Refresh). */
+    @Transactional
+    @Modifying
+    @Query("update RefreshToken t set t.usedAt = :now where t.id = :id and t.usedAt is null")
+    int markUsed(@Param("id") UUID id, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken t where t.familyId = :familyId")
+    int deleteFamily(@Param("familyId") UUID familyId);
+
+    /** Löscht höchstens {@code limit} abgelaufene Tokens; von parallelen Sweepern gesperrte Zeilen werden übersprungen. */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            delete from refresh_tokens where id in (
+                select id from refresh_tokens where expires_at < :now
+                limit :limit for update skip locked)
+            """, nativeQuery = true)
+    int deleteExpiredBatch(@Param("now") Instant now, @Param("limit") int limit);
+}
@@ -0,0 +1,66 @@
+package com.example.pwm.repo;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Read-Replikat, nur aktiv wenn {@code app.datasource.replica.url} gesetzt ist; sonst bleibt
+ * die von Spring Boot konfigurierte DataSource. Pool-Einstellungen: {@code spring.datasource.hikari.*}
+ * für den Primary, {@code app.datasource.replica.hikari.*} für das Replikat.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "app.datasource.replica", name = "url")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties props) {
+        HikariDataSource ds = props.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        ds.setPoolName("primary");
+        return ds;
+    }
+
+    @Bean
+    @ConfigurationProperties("app.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(DataSourceProperties props,
+                                              @Value("${app.datasource.replica.url}") String url,
+                                              @Value("${app.datasource.replica.username:}") String username,
+                                              @Value("${app.datasource.replica.password:}") String password) {
+        HikariDataSource ds = new HikariDataSource();
+        ds.setPoolName("replica");
+        ds.setJdbcUrl(url);
+        ds.setUsername(username.isBlank() ? props.determineUsername() : username);
+        ds.setPassword(username.isBlank() ? props.determinePassword() : password);
+        ds.setReadOnly(true);
+        // Start nicht am Replikat scheitern lassen und bei Ausfall schnell auf den Primary ausweichen
+        ds.setInitializationFailTimeout(-1);
+        ds.setConnectionTimeout(2000);
+        return ds;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource routingDataSource(HikariDataSource primaryDataSource,
+                                                     HikariDataSource replicaDataSource,
+                                                     MeterRegistry registry,
+                                                     @Value("${app.datasource.replica.max-lag:PT1S}") Duration maxLag) {
+        return new ReplicaRoutingDataSource(primaryDataSource, replicaDataSource, maxLag, registry);
+    }
+
+    /** Die DataSource für JPA, Flyway und den Health-Check. */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
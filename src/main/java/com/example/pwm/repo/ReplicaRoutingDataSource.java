@@ -0,0 +1,125 @@
+package com.example.pwm.repo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.Duration;
+
+/**
+ * Schickt Connections aus {@code readOnly}-Transaktionen an das Replikat, alles andere an den Primary.
+ * Ist das Replikat down oder hängt es mehr als {@code maxLag} hinterher, geht auch Read-Traffic an den Primary.
+ * Muss hinter einem {@code LazyConnectionDataSourceProxy} liegen: erst beim ersten Statement steht fest,
+ * ob die laufende Transaktion readOnly ist.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    /** Lag in Sekunden; 0 auf einem Primary (lokaler Stand-in) und wenn das Replikat alles eingespielt hat. */
+    private static final String LAG_SQL = """
+            select case
+                when not pg_is_in_recovery() then 0
+                when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0
+                else coalesce(extract(epoch from clock_timestamp() - pg_last_xact_replay_timestamp()), 0)
+            end
+            """;
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final double maxLagSeconds;
+
+    private final Counter write;
+    private final Counter read;
+    private final Counter fallbackLag;
+    private final Counter fallbackDown;
+    private final Counter fallbackError;
+
+    /** Bis zur ersten erfolgreichen Probe gilt das Replikat als down. */
+    private volatile boolean up = false;
+    private volatile double lagSeconds = Double.NaN;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, Duration maxLag, MeterRegistry registry) {
+        this.primary = primary;
+        this.replica = replica;
+        this.maxLagSeconds = maxLag.toMillis() / 1000.0;
+        this.write = route(registry, "primary", "write");
+        this.read = route(registry, "replica", "read");
+        this.fallbackLag = route(registry, "primary", "replica-lag");
+        this.fallbackDown = route(registry, "primary", "replica-down");
+        this.fallbackError = route(registry, "primary", "replica-error");
+        Gauge.builder("pwm.datasource.replica.lag", this, d -> d.lagSeconds).baseUnit("seconds").register(registry);
+        Gauge.builder("pwm.datasource.replica.up", this, d -> d.up ? 1 : 0).register(registry);
+    }
+
+    private static Counter route(MeterRegistry registry, String route, String reason) {
+        return Counter.builder("pwm.datasource.connections")
+                .tag("route", route)
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            write.increment();
+            return primary.getConnection();
+        }
+        if (!up) {
+            fallbackDown.increment();
+            return primary.getConnection();
+        }
+        if (lagSeconds > maxLagSeconds) {
+            fallbackLag.increment();
+            return primary.getConnection();
+        }
+        try {
+            Connection c = replica.getConnection();
+            read.increment();
+            return c;
+        } catch (SQLException e) {
+            // bis zur nächsten Probe nicht mehr versuchen, sonst wartet jeder Read auf den Pool-Timeout
+            markDown(e);
+            fallbackError.increment();
+            return primary.getConnection();
+        }
+    }
+
+    /** Wie bei Hikari: beide Pools laufen mit festen Credentials. */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Nur Pool-Credentials werden unterstützt");
+    }
+
+    /** Misst den Replikations-Lag. */
+    @Scheduled(fixedDelayString = "${app.datasource.replica.probe-interval:PT5S}")
+    public void probe() {
+        try (Connection c = replica.getConnection();
+             Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery(LAG_SQL)) {
+            rs.next();
+            lagSeconds = rs.getDouble(1);
+            if (!up) log.info("Replikat erreichbar (Lag {} s)", lagSeconds);
+            up = true;
+        } catch (SQLException e) {
+            markDown(e);
+        }
+    }
+
+    private void markDown(SQLException e) {
+        if (up) log.warn("Replikat nicht erreichbar, Reads gehen an den Primary: {}", e.getMessage());
+        up = false;
+        lagSeconds = Double.NaN;
+    }
+}
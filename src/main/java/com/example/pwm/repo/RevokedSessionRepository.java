@@ -0,0 +1,44 @@
+package com.example.pwm.repo;
+
+import com.example.pwm.entity.RevokedSession;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public interface RevokedSessionRepository extends JpaRepository<RevokedSession, UUID> {
+
+    /** Nur für Bloom-Treffer; vom Primary, damit ein frischer Widerruf sofort greift. */
+    @Transactional
+    boolean existsByFamilyIdAndExpiresAtAfter(UUID familyId, Instant now);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            insert into revoked_sessions (family_id, revoked_at, expires_at) values (:familyId, :now, :expiresAt)
+            on conflict (family_id) do update set expires_at = greatest(revoked_sessions.expires_at, excluded.expires_at)
+            """, nativeQuery = true)
+    int revoke(@Param("familyId") UUID familyId, @Param("now") Instant now, @Param("expiresAt") Instant expiresAt);
+
+    @Transactional(readOnly = true)
+    @Query("select r.familyId from RevokedSession r where r.expiresAt > :now")
+    List<UUID> findActiveIds(@Param("now") Instant now);
+
+    @Transactional(readOnly = true)
+    @Query("select r.familyId from RevokedSession r where r.expiresAt > :now and r.revokedAt >= :since")
+    List<UUID> findActiveIdsRevokedAfter(@Param("since") Instant since, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+            delete from revoked_sessions where family_id in (
+                select family_id from revoked_sessions where expires_at < :now
+                limit :limit for update skip locked)
+            """, nativeQuery = true)
+    int deleteExpiredBatch(@Param("now") Instant now, @Param("limit") int limit);
+}
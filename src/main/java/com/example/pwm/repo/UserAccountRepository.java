@@ -1,14 +1,170 @@
 package com.example.pwm.repo;
 
 import com.example.pwm.entity.UserAccount;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 public interface UserAccountRepository extends JpaRepository<UserAccount, UUID> {
-    boolean existsByEmailIgnoreCase(String email);
-    Optional<UserAccount> findByEmail(String email);
+
+    // Lookups für Auth-Entscheidungen (Duplikate, Sperren, Fehlversuche) lesen immer vom Primary:
+    // das von SimpleJpaRepository geerbte readOnly würde sie sonst an ein evtl. nachhinkendes Replikat schicken.
+
+    @Transactional
+    boolean existsByEmailKey(String emailKey);
+
+    @Transactional
+    Optional<UserAccount> findByEmailKey(String emailKey);
+
+    @Transactional
     Optional<UserAccount> findByAlexaUserId(String alexaUserId);
 
+    @Override
+    @Transactional
+    Optional<UserAccount> findById(UUID id);
+
+    // readOnly = darf vom Replikat kommen (Lag höchstens app.datasource.replica.max-lag)
+
+    @Transactional(readOnly = true)
+    @Query("select new com.example.pwm.repo.AccountStatus(u.email, " +
+           "case when u.alexaUserId is not null and u.alexaUserId <> '' then true else false end, " +
+           "case when u.voicePinHash is not null and u.voicePinHash <> '' then true else false end) " +
+           "from UserAccount u where u.id = :id")
+    Optional<AccountStatus> findStatusById(@Param("id") UUID id);
+
+    @Transactional(readOnly = true)
+    @Query("select new com.example.pwm.repo.AccountView(u.id, u.email, u.createdAt, " +
+           "case when u.alexaUserId is not null and u.alexaUserId <> '' then true else false end, " +
+           "case when u.voicePinHash is not null and u.voicePinHash <> '' then true else false end, " +
+           "u.voiceLockUntil) " +
+           "from UserAccount u where u.id in :ids")
+    List<AccountView> findViewsByIds(@Param("ids") Collection<UUID> ids);
+
+    @Transactional(readOnly = true)
+    @Query("select new com.example.pwm.repo.VaultState(u.vaultVersion, u.vaultPurgedVersion) " +
+           "from UserAccount u where u.id = :id")
+    Optional<VaultState> findVaultStateById(@Param("id") UUID id);
+
+    /**
+     * Zählt die Tresor-Version hoch. Die Zeilensperre serialisiert Schreiber desselben Users,
+     * dadurch werden Versionen in aufsteigender Reihenfolge sichtbar (kein Sync-Eintrag geht verloren).
+     */
+    @Modifying
+    @Query("update UserAccount u set u.vaultVersion = u.vaultVersion + 1 where u.id = :id")
+    int bumpVaultVersion(@Param("id") UUID id);
+
+    // ---------- Envelope-Verschlüsselung ----------
+
+    /** Eigene Transaktion auf dem Primary, auch innerhalb von readOnly-Reads: ein fehlender DEK würde sonst doppelt angelegt. */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Query("select u.dekWrapped from UserAccount u where u.id = :id")
+    Optional<String> findDekWrappedById(@Param("id") UUID id);
+
+    /**
+     * Legt den DEK nur an, wenn noch keiner existiert; 0 = ein paralleler Request war schneller.
+     * Eigene Transaktion: der DEK landet sofort im Cache und darf nicht mit einer äußeren Transaktion zurückrollen.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    @Modifying
+    @Query("update UserAccount u set u.dekWrapped = :wrapped, u.dekKekVersion = :version " +
+           "where u.id = :id and u.dekWrapped is null")
+    int setDekIfAbsent(@Param("id") UUID id, @Param("wrapped") String wrapped, @Param("version") int version);
+
+    /** Optimistisches Rewrap: greift nur, wenn sich der gewrappte DEK seit dem Lesen nicht geändert hat. */
+    @Transactional
+    @Modifying
+    @Query("update UserAccount u set u.dekWrapped = :wrapped, u.dekKekVersion = :version " +
+           "where u.id = :id and u.dekWrapped = :old")
+    int replaceDek(@Param("id") UUID id, @Param("old") String old,
+                   @Param("wrapped") String wrapped, @Param("version") int version);
+
+    @Transactional(readOnly = true)
+    @Query("select new com.example.pwm.repo.EncryptedRow(u.id, u.id, u.dekWrapped) from UserAccount u " +
+           "where u.dekKekVersion <> :version and u.id > :after order by u.id")
+    List<EncryptedRow> findDeksNotWrappedWith(@Param("version") int version, @Param("after") UUID after, Limit limit);
+
+    /** TOTP-Secrets noch im Altformat (statischer Key); Prädikat passt zu ix_users_totp_legacy. */
+    @Transactional(readOnly = true)
+    @Query("select new com.example.pwm.repo.EncryptedRow(u.id, u.id, u.totpSecretEnc) from UserAccount u " +
+           "where u.totpSecretEnc not like 'e1:%' and u.totpSecretEnc <> '' and u.id > :after order by u.id")
+    List<EncryptedRow> findLegacyTotpSecrets(@Param("after") UUID after, Limit limit);
+
+    @Transactional
+    @Modifying
+    @Query("update UserAccount u set u.totpSecretEnc = :enc where u.id = :id and u.totpSecretEnc = :old")
+    int replaceTotpSecret(@Param("id") UUID id, @Param("old") String old, @Param("enc") String enc);
+
+    @Transactional(readOnly = true)
+    @Query("select count(u) > 0 from UserAccount u " +
+           "where u.id = :id and u.alexaUserId is not null and u.alexaUserId <> ''")
+    boolean isAlexaLinked(@Param("id") UUID id);
+
+    /** Setzt PIN-Hash samt Zähler/Sperre direkt per UPDATE, nur für verknüpfte Accounts; 0 = nicht verknüpft. */
+    @Transactional
+    @Modifying
+    @Query("update UserAccount u set u.voicePinHash = :hash, u.voiceFailedAttempts = 0, u.voiceLockUntil = null " +
+           "where u.id = :id and u.alexaUserId is not null and u.alexaUserId <> ''")
+    int updateVoicePinIfLinked(@Param("id") UUID id, @Param("hash") String hash);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select u.emailKey from UserAccount u")
+    Stream<String> streamAllEmailKeys();
+
+    @Query("select u.emailKey from UserAccount u where u.createdAt >= :since")
+    Stream<String> streamEmailKeysCreatedAfter(@Param("since") Instant since);
+
+    /**
+     * Zählt einen Login-Fehlversuch atomar hoch und setzt bei jedem {@code perTier}-ten Fehlversuch
+     * die Sperre (Basisdauer * 2^(tier-1), gedeckelt auf {@code maxSeconds}). Ein Statement,
+     * kein Read-Modify-Write: parallele Fehlversuche gehen nicht verloren. Liefert den neuen Zählerstand
+     * (leer, wenn es den User nicht gibt); jeder Stand wird genau einem Aufrufer geliefert.
+     */
+    @Transactional
+    @Query(value = """
+            update users set
+                voice_failed_attempts = voice_failed_attempts + 1,
+                voice_lock_until = case
+                    when (voice_failed_attempts + 1) % :perTier = 0
+                    then cast(:now as timestamptz) + make_interval(secs => least(
+                            :baseSeconds * power(2, least((voice_failed_attempts + 1) / :perTier - 1, 30)),
+                            :maxSeconds))
+                    else voice_lock_until
+                end
+            where id = :id
+            returning voice_failed_attempts
+            """, nativeQuery = true)
+    Optional<Integer> registerLoginFailure(@Param("id") UUID id,
+                                           @Param("now") Instant now,
+                                           @Param("perTier") int perTier,
+                                           @Param("baseSeconds") long baseSeconds,
+                                           @Param("maxSeconds") long maxSeconds);
+
+    /** Setzt Zähler und Sperre nur zurück, wenn es etwas zurückzusetzen gibt. */
+    @Transactional
+    @Modifying
+    @Query("update UserAccount u set u.voiceFailedAttempts = 0, u.voiceLockUntil = null " +
+           "where u.id = :id and (u.voiceFailedAttempts <> 0 or u.voiceLockUntil is not null)")
+    int resetLoginFailures(@Param("id") UUID id);
+
+    /** Markiert TOTP als bestätigt, ohne die übrige Zeile zurückzuschreiben; 0 = war schon bestätigt. */
+    @Transactional
+    @Modifying
+    @Query("update UserAccount u set u.totpVerified = true where u.id = :id and u.totpVerified = false")
+    int markTotpVerified(@Param("id") UUID id);
+
 }
@@ -0,0 +1,88 @@
+package com.example.pwm.repo;
+
+import com.example.pwm.entity.VaultItem;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+public interface VaultItemRepository extends JpaRepository<VaultItem, UUID> {
+
+    @Transactional(readOnly = true)
+    @Query("select new com.example.pwm.repo.VaultRow(v.id, v.dataEnc, v.createdAt, v.updatedAt, v.version, v.deleted) " +
+           "from VaultItem v where v.user.id = :userId and v.deleted = false order by v.createdAt, v.id")
+    List<VaultRow> firstPage(@Param("userId") UUID userId, Limit limit);
+
+    /** Keyset-Seite nach (createdAt, id); nutzt ix_vault_items_user_created ohne OFFSET. */
+    @Transactional(readOnly = true)
+    @Query("select new com.example.pwm.repo.VaultRow(v.id, v.dataEnc, v.createdAt, v.updatedAt, v.version, v.deleted) " +
+           "from VaultItem v where v.user.id = :userId and v.deleted = false and (v.createdAt, v.id) > (:createdAt, :id) " +
+           "order by v.createdAt, v.id")
+    List<VaultRow> pageAfter(@Param("userId") UUID userId,
+                             @Param("createdAt") Instant createdAt,
+                             @Param("id") UUID id,
+                             Limit limit);
+
+    /** Änderungen seit (version, id), Tombstones optional; nutzt ix_vault_items_user_version. */
+    @Transactional(readOnly = true)
+    @Query("select new com.example.pwm.repo.VaultRow(v.id, v.dataEnc, v.createdAt, v.updatedAt, v.version, v.deleted) " +
+           "from VaultItem v where v.user.id = :userId and (v.version, v.id) > (:version, :id) " +
+           "and (:withDeleted = true or v.deleted = false) " +
+           "order by v.version, v.id")
+    List<VaultRow> changesAfter(@Param("userId") UUID userId,
+                                @Param("version") long version,
+                                @Param("id") UUID id,
+                                @Param("withDeleted") boolean withDeleted,
+                                Limit limit);
+
+    @Transactional
+    @Modifying
+    @Query("update VaultItem v set v.dataEnc = :dataEnc, v.updatedAt = :now, v.version = :version " +
+           "where v.id = :id and v.user.id = :userId and v.deleted = false")
+    int updateData(@Param("userId") UUID userId, @Param("id") UUID id, @Param("dataEnc") String dataEnc,
+                   @Param("now") Instant now, @Param("version") long version);
+
+    /** Löschen als Tombstone: Inhalt leeren, Version hochsetzen. */
+    @Transactional
+    @Modifying
+    @Query("update VaultItem v set v.dataEnc = '', v.deleted = true, v.updatedAt = :now, v.version = :version " +
+           "where v.id = :id and v.user.id = :userId and v.deleted = false")
+    int markDeleted(@Param("userId") UUID userId, @Param("id") UUID id,
+                    @Param("now") Instant now, @Param("version") long version);
+
+    /** Einträge noch im Altformat (statischer Key); Prädikat passt zu ix_vault_items_legacy. */
+    @Transactional(readOnly = true)
+    @Query("select new com.example.pwm.repo.EncryptedRow(v.id, v.user.id, v.dataEnc) from VaultItem v " +
+           "where v.deleted = false and v.dataEnc not like 'e1:%' and v.id > :after order by v.id")
+    List<EncryptedRow> findLegacyData(@Param("after") UUID after, Limit limit);
+
+    /** Nur Umschlüsseln, Inhalt unverändert: daher ohne Versionssprung (kein Sync-Traffic). */
+    @Transactional
+    @Modifying
+    @Query("update VaultItem v set v.dataEnc = :enc where v.id = :id and v.dataEnc = :old")
+    int replaceData(@Param("id") UUID id, @Param("old") String old, @Param("enc") String enc);
+
+    /**
+     * Entfernt einen Batch abgelaufener Tombstones und hebt pro betroffenem User
+     * {@code vault_purged_version} an; Clients mit älterem Stand müssen danach voll synchronisieren.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            with purged as (
+                delete from vault_items where id in (
+                    select id from vault_items where deleted and updated_at < :cutoff
+                    limit :limit for update skip locked)
+                returning user_id, version)
+            update users u set vault_purged_version = greatest(u.vault_purged_version, p.v)
+            from (select user_id, max(version) as v from purged group by user_id) p
+            where u.id = p.user_id
+            """, nativeQuery = true)
+    int purgeTombstonesBatch(@Param("cutoff") Instant cutoff, @Param("limit") int limit);
+}
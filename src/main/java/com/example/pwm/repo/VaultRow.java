@@ -0,0 +1,7 @@
+package com.example.pwm.repo;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/** Schlanke Projektion eines Tresor-Eintrags für Listen und Sync (ohne User-Join). */
+public record VaultRow(UUID id, String dataEnc, Instant createdAt, Instant updatedAt, long version, boolean deleted) {}
@@ -0,0 +1,4 @@
+package com.example.pwm.repo;
+
+/** Sync-Stand eines Users: aktuelle Tresor-Version und bis wohin Tombstones bereits entfernt sind. */
+public record VaultState(long version, long purgedVersion) {}
@@ -1,15 +1,55 @@
 package com.example.pwm.repo;
 
 import com.example.pwm.entity.VoiceChallenge;
-import com.example.pwm.entity.UserAccount;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface VoiceChallengeRepository extends JpaRepository<VoiceChallenge, UUID> {
-    Optional<VoiceChallenge> findFirstByUserAndCodeAndVerifiedFalseAndExpiresAtAfter(UserAccount user, String code, Instant now);
-    Optional<VoiceChallenge> findFirstByUserAndVerifiedTrueAndExpiresAtAfter(UserAccount user, Instant now);
-    long deleteByExpiresAtBefore(Instant t);
+    Optional<VoiceChallenge> findFirstByUser_IdAndCodeAndVerifiedFalseAndAttemptsLessThanAndExpiresAtAfter(
+            UUID userId, String code, int maxAttempts, Instant now);
+
+    /** Löscht höchstens {@code limit} abgelaufene Challenges; von parallelen Sweepern gesperrte Zeilen werden übersprungen. */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            delete from voice_challenges where id in (
+                select id from voice_challenges where expires_at < :now
+                limit :limit for update skip locked)
+            """, nativeQuery = true)
+    int deleteExpiredBatch(@Param("now") Instant now, @Param("limit") int limit);
+
+    /** Prüft über die FK-Spalte, ohne User oder Challenges zu laden. Darf vom Replikat kommen, der Client pollt. */
+    @Transactional(readOnly = true)
+    boolean existsByUser_IdAndVerifiedTrueAndExpiresAtAfter(UUID userId, Instant now);
+
+    @Transactional(readOnly = true)
+    @Query("select new com.example.pwm.repo.VoiceChallengeView(c.user.id, c.code, c.createdAt, c.expiresAt, c.verified, c.attempts) " +
+           "from VoiceChallenge c where c.user.id in :userIds and c.expiresAt > :now order by c.createdAt")
+    List<VoiceChallengeView> findViewsByUserIds(@Param("userIds") Collection<UUID> userIds, @Param("now") Instant now);
+
+    /** Löscht eine gültige, verifizierte Challenge; Rückgabe > 0 genau für den Aufrufer, der sie verbraucht hat. */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from VoiceChallenge c where c.user.id = :userId and c.verified = true and c.expiresAt > :now")
+    int deleteVerifiedByUserId(@Param("userId") UUID userId, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query("update VoiceChallenge c set c.attempts = c.attempts + 1 " +
+           "where c.user.id = :userId and c.verified = false and c.expiresAt > :now")
+    int incrementPendingAttempts(@Param("userId") UUID userId, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from VoiceChallenge c where c.user.id = :userId")
+    int deleteAllByUserId(@Param("userId") UUID userId);
 }
@@ -0,0 +1,8 @@
+package com.example.pwm.repo;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/** Noch gültige Voice-Challenge; {@code userId} kommt aus der FK-Spalte, ohne den User zu laden. */
+public record VoiceChallengeView(UUID userId, String code, Instant createdAt, Instant expiresAt,
+                                 boolean verified, int attempts) {}
@@ -2,12 +2,59 @@ package com.example.pwm.repo;
 
 import com.example.pwm.entity.VoiceLinkCode;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface VoiceLinkCodeRepository extends JpaRepository<VoiceLinkCode, UUID> {
     Optional<VoiceLinkCode> findByCode(String code);
-    long deleteByExpiresAtBefore(Instant t);
+
+    /** Wie {@link #findByCode}, aber tolerant gegenüber abgelaufenen Duplikaten (partitioniertes Layout ohne globalen Unique-Index). */
+    Optional<VoiceLinkCode> findFirstByCodeAndExpiresAtAfter(String code, Instant now);
+
+    boolean existsByCodeAndExpiresAtAfter(String code, Instant now);
+
+    @Transactional(readOnly = true)
+    @Query("select new com.example.pwm.repo.VoiceLinkCodeView(l.user.id, l.code, l.expiresAt) " +
+           "from VoiceLinkCode l where l.user.id in :userIds and l.expiresAt > :now order by l.expiresAt")
+    List<VoiceLinkCodeView> findViewsByUserIds(@Param("userIds") Collection<UUID> userIds, @Param("now") Instant now);
+
+    /**
+     * Legt den Code an, wenn kein Unique-Index kollidiert; 0 = Code belegt (auch von abgelaufenen, noch nicht
+     * gesweepten Zeilen), der Aufrufer würfelt dann neu. Ohne Konfliktziel, damit es mit beiden Layouts
+     * ({@code code} bzw. partitioniert {@code code, expires_at}) funktioniert.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            insert into voice_link_codes (id, user_id, code, expires_at)
+            values (:id, :userId, :code, :expiresAt)
+            on conflict do nothing
+            """, nativeQuery = true)
+    int insertIfAbsent(@Param("id") UUID id,
+                       @Param("userId") UUID userId,
+                       @Param("code") String code,
+                       @Param("expiresAt") Instant expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("delete from VoiceLinkCode l where l.code = :code")
+    int deleteAllByCode(@Param("code") String code);
+
+    /** Löscht höchstens {@code limit} abgelaufene Link-Codes; von parallelen Sweepern gesperrte Zeilen werden übersprungen. */
+    @Transactional
+    @Modifying
+    @Query(value = """
+            delete from voice_link_codes where id in (
+                select id from voice_link_codes where expires_at < :now
+                limit :limit for update skip locked)
+            """, nativeQuery = true)
+    int deleteExpiredBatch(@Param("now") Instant now, @Param("limit") int limit);
 }
@@ -0,0 +1,7 @@
+package com.example.pwm.repo;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/** Noch gültiger Link-Code; {@code userId} kommt aus der FK-Spalte, ohne den User zu laden. */
+public record VoiceLinkCodeView(UUID userId, String code, Instant expiresAt) {}
@@ -1,6 +1,7 @@
 package com.example.pwm.security;
 
 import com.example.pwm.service.JwtService;
+import com.example.pwm.service.TokenRevocationList;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -19,9 +20,11 @@ import java.util.UUID;
 public class JwtAuthFilter extends OncePerRequestFilter {
 
     private final JwtService jwt;
+    private final TokenRevocationList revocations;
 
-    public JwtAuthFilter(JwtService jwt) {
+    public JwtAuthFilter(JwtService jwt, TokenRevocationList revocations) {
         this.jwt = jwt;
+        this.revocations = revocations;
     }
 
     /** Endpunkte/Methoden, für die der Filter nicht laufen soll (z. B. /api/auth/** und OPTIONS) */
@@ -36,6 +39,8 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         return p.equals("/api/auth/register")
                 || p.equals("/api/auth/login")
                 || p.equals("/api/auth/totp-verify")
+                || p.equals("/api/auth/refresh")
+                || p.equals("/api/auth/logout")
                 || p.equals("/api/auth/ping")
                 || p.startsWith("/oauth2/");
     }
@@ -49,6 +54,8 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         if (uri.equals("/api/auth/register")
                 || uri.equals("/api/auth/login")
                 || uri.equals("/api/auth/totp-verify")
+                || uri.equals("/api/auth/refresh")
+                || uri.equals("/api/auth/logout")
                 || uri.equals("/api/auth/ping")
                 || uri.startsWith("/oauth2/")) {
             chain.doFilter(request, response);
@@ -63,7 +70,14 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
         try {
             final String token = header.substring("Bearer ".length()).trim();
-            final java.util.UUID uid = jwt.parseUserId(token); // prüft Signatur & exp
+            final JwtService.AccessToken at = jwt.parseAccessToken(token); // prüft Signatur & exp
+            // Bloom-Filter zuerst; nur mögliche Treffer kosten einen DB-Lookup
+            if (revocations.isRevoked(at.sessionId())) {
+                SecurityContextHolder.clearContext();
+                chain.doFilter(request, response);
+                return;
+            }
+            final java.util.UUID uid = at.userId();
             var auth = new org.springframework.security.authentication.UsernamePasswordAuthenticationToken(uid, null, java.util.List.of());
             auth.setDetails(new org.springframework.security.web.authentication.WebAuthenticationDetailsSource().buildDetails(request));
             org.springframework.security.core.context.SecurityContextHolder.getContext().setAuthentication(auth);
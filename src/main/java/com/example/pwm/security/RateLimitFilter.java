@@ -0,0 +1,51 @@
+package com.example.pwm.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+/**
+ * Per-IP-Limit vor den teuren Auth-Endpunkten – greift, bevor DB oder BCrypt angefasst werden.
+ * {@code /api/verify} fehlt bewusst: dort ruft nur das Alexa-Backend von wenigen IPs für alle Voice-User an,
+ * das Limit läuft pro {@code alexaUserId} im {@code VoiceAuthController}.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Set<String> LIMITED = Set.of(
+            "/api/auth/login",
+            "/api/auth/totp-verify"
+    );
+
+    private final RateLimiter limiter;
+
+    public RateLimitFilter(RateLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equalsIgnoreCase(request.getMethod()) || !LIMITED.contains(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long retryAfter = limiter.tryAcquireIp(request.getRemoteAddr());
+        if (retryAfter > 0) {
+            response.setStatus(429);
+            response.setHeader("Retry-After", String.valueOf(retryAfter));
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.getWriter().write("{\"error\":\"rate-limited\",\"retryAfterSeconds\":" + retryAfter + "}");
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+}
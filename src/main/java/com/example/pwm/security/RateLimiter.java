@@ -0,0 +1,107 @@
+package com.example.pwm.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-freie Token-Buckets pro Client-IP und pro Account-Schlüssel.
+ * <p>
+ * Statt einer Map pro Schlüssel liegen die Buckets in einer Count-Min-Skizze fester Größe
+ * (GCRA: pro Zelle nur die "theoretical arrival time"). Der Speicher bleibt damit konstant,
+ * egal wie viele verschiedene IPs anfragen; Kollisionen können nur strenger, nie lockerer limitieren.
+ */
+@Component
+public class RateLimiter {
+
+    private final boolean enabled;
+    private final Sketch ip;
+    private final Sketch account;
+
+    public RateLimiter(@Value("${app.ratelimit.enabled:true}") boolean enabled,
+                       @Value("${app.ratelimit.ip.per-minute:60}") int ipPerMinute,
+                       @Value("${app.ratelimit.ip.burst:20}") int ipBurst,
+                       @Value("${app.ratelimit.account.per-minute:10}") int accountPerMinute,
+                       @Value("${app.ratelimit.account.burst:5}") int accountBurst,
+                       @Value("${app.ratelimit.sketch-width:65536}") int width) {
+        this.enabled = enabled;
+        this.ip = new Sketch(ipPerMinute, ipBurst, width);
+        this.account = new Sketch(accountPerMinute, accountBurst, width);
+    }
+
+    /** 0 = erlaubt, sonst Sekunden bis zum nächsten erlaubten Versuch. */
+    public long tryAcquireIp(String clientIp) {
+        return enabled ? ip.tryAcquire(clientIp) : 0;
+    }
+
+    /** 0 = erlaubt, sonst Sekunden bis zum nächsten erlaubten Versuch. */
+    public long tryAcquireAccount(String key) {
+        return enabled ? account.tryAcquire(key) : 0;
+    }
+
+    static final class Sketch {
+        private static final int DEPTH = 4;
+
+        private final long emissionNanos;
+        private final long toleranceNanos;
+        private final int mask;
+        private final long seed = new SecureRandom().nextLong();
+        private final long origin = System.nanoTime();
+        private final AtomicLongArray tat;
+
+        Sketch(int perMinute, int burst, int width) {
+            this.emissionNanos = Duration.ofMinutes(1).toNanos() / Math.max(1, perMinute);
+            this.toleranceNanos = emissionNanos * Math.max(0, burst - 1);
+            int w = Integer.highestOneBit(Math.max(64, width));
+            this.mask = w - 1;
+            this.tat = new AtomicLongArray(DEPTH * w);
+        }
+
+        long tryAcquire(String key) {
+            long now = System.nanoTime() - origin + 1;
+            long h = hash(key);
+            int h1 = (int) h, h2 = (int) (h >>> 32) | 1;
+
+            long est = Long.MAX_VALUE;
+            for (int i = 0; i < DEPTH; i++) {
+                est = Math.min(est, tat.get(slot(i, h1, h2)));
+            }
+            long t = Math.max(est, now);
+            long ahead = t - now;
+            if (ahead > toleranceNanos) {
+                return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(ahead - toleranceNanos + 999_999_999L));
+            }
+            long next = t + emissionNanos;
+            // Conservative update: nur Zellen anheben, die unter dem neuen Wert liegen
+            for (int i = 0; i < DEPTH; i++) {
+                int s = slot(i, h1, h2);
+                long cur;
+                while ((cur = tat.get(s)) < next && !tat.compareAndSet(s, cur, next)) {
+                    // retry
+                }
+            }
+            return 0;
+        }
+
+        private int slot(int row, int h1, int h2) {
+            return row * (mask + 1) + ((h1 + row * h2) & mask);
+        }
+
+        /** FNV-1a mit Prozess-Seed, damit Kollisionen nicht gezielt vorab berechnet werden können. */
+        private long hash(String key) {
+            long h = 0xcbf29ce484222325L ^ seed;
+            for (int i = 0; i < key.length(); i++) {
+                h ^= key.charAt(i);
+                h *= 0x100000001b3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.pwm.security;
 
 import com.example.pwm.service.JwtService;
+import com.example.pwm.service.TokenRevocationList;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -22,12 +24,17 @@ import java.util.List;
 public class SecurityConfig {
 
     @Bean
-    public JwtAuthFilter jwtAuthFilter(JwtService jwtService) {
-        return new JwtAuthFilter(jwtService);
+    public JwtAuthFilter jwtAuthFilter(JwtService jwtService, TokenRevocationList revocations) {
+        return new JwtAuthFilter(jwtService, revocations);
     }
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http, JwtAuthFilter jwt) throws Exception {
+    public RateLimitFilter rateLimitFilter(RateLimiter limiter) {
+        return new RateLimitFilter(limiter);
+    }
+
+    @Bean
+    public SecurityFilterChain filterChain(HttpSecurity http, JwtAuthFilter jwt, RateLimitFilter rateLimit) throws Exception {
         http
                 .csrf(csrf -> csrf.disable())
                 .cors(cors -> {})
@@ -35,9 +42,13 @@ public class SecurityConfig {
                 // SecurityConfig.java
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
-                        .requestMatchers("/actuator/health", "/error", "/").permitAll()
-                        .requestMatchers("/api/auth/register", "/api/auth/login", "/api/auth/totp-verify", "/api/auth/ping", "/oauth2/**").permitAll()
+                        // Abschluss-Dispatch gestreamter Antworten; der Ursprungs-Request ist bereits autorisiert
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                        .requestMatchers("/actuator/health", "/error", "/", "/.well-known/jwks.json").permitAll()
+                        .requestMatchers("/api/auth/register", "/api/auth/login", "/api/auth/totp-verify", "/api/auth/refresh", "/api/auth/logout", "/api/auth/ping", "/oauth2/**").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/auth/me").authenticated()
+                        .requestMatchers("/api/vault", "/api/vault/**").authenticated()
+                        .requestMatchers("/graphql").authenticated()
                         .anyRequest().permitAll()
                 )
                 .exceptionHandling(h -> h.authenticationEntryPoint((req, res, ex) -> {
@@ -45,6 +56,7 @@ public class SecurityConfig {
                 }));
 
         http.addFilterBefore(jwt, UsernamePasswordAuthenticationFilter.class);
+        http.addFilterBefore(rateLimit, JwtAuthFilter.class);
         return http.build();
     }
 
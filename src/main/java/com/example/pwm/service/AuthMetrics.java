@@ -0,0 +1,40 @@
+package com.example.pwm.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Zähler für sicherheitsrelevante Ausgänge der Auth-Flows
+ * (pwm.auth.events{flow=login|totp|voice|refresh, outcome=...}).
+ */
+@Component
+public class AuthMetrics {
+
+    public static final String LOGIN = "login";
+    public static final String TOTP = "totp";
+    public static final String VOICE = "voice";
+    public static final String REFRESH = "refresh";
+
+    private final MeterRegistry registry;
+
+    public AuthMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public void badCredentials(String flow) { count(flow, "bad-credentials"); }
+    public void badCode(String flow)        { count(flow, "bad-code"); }
+    public void badPin()                    { count(VOICE, "bad-pin"); }
+    public void locked(String flow)         { count(flow, "locked"); }
+    public void lockout(String flow)        { count(flow, "lockout"); }
+    public void rateLimited(String flow)    { count(flow, "rate-limited"); }
+    public void refreshReuse()              { count(REFRESH, "reuse"); }
+
+    private void count(String flow, String outcome) {
+        Counter.builder("pwm.auth.events")
+                .tag("flow", flow)
+                .tag("outcome", outcome)
+                .register(registry)
+                .increment();
+    }
+}
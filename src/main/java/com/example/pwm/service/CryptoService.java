@@ -1,29 +1,52 @@
 package com.example.pwm.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 
 @Service
 public class CryptoService {
 
     private static final String TRANSFORMATION = "AES/GCM/NoPadding";
-    private static final int GCM_TAG_BITS = 128;     
-    private static final int IV_LEN = 12;            
+    private static final int GCM_TAG_BITS = 128;
+    private static final int GCM_TAG_LEN = GCM_TAG_BITS / 8;
+    private static final int IV_LEN = 12;
 
-    private final byte[] key;                       
+    /** Eine Cipher-Instanz pro Thread; wird für jede Nachricht mit frischer IV neu initialisiert. */
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final SecretKey key;
     private final SecureRandom rnd = new SecureRandom();
+    private final Timer encryptTimer;
+    private final Timer decryptTimer;
 
 
     public CryptoService(
+            MeterRegistry registry,
             @Value("${app.encryption.key-b64:${APP_ENCRYPTION_KEY:}}") String keyB64) {
+        this.encryptTimer = Timer.builder("pwm.crypto").tag("op", "encrypt").register(registry);
+        this.decryptTimer = Timer.builder("pwm.crypto").tag("op", "decrypt").register(registry);
         if (keyB64 == null || keyB64.isBlank()) {
             throw new IllegalStateException("APP_ENCRYPTION_KEY / app.encryption.key-b64 muss gesetzt sein (Base64, 32 Bytes).");
         }
@@ -31,58 +54,114 @@ public class CryptoService {
         if (raw.length != 32) {
             throw new IllegalStateException("Verschlüsselungs-Key muss 32 Bytes (AES-256) haben.");
         }
-        this.key = raw;
+        this.key = new SecretKeySpec(raw, "AES");
     }
 
     public String encrypt(String plaintext) {
         if (plaintext == null) return null;
+        return Base64.getEncoder().encodeToString(encrypt(plaintext.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public String decrypt(String b64) {
+        if (b64 == null) return null;
+        return new String(decrypt(Base64.getDecoder().decode(b64)), StandardCharsets.UTF_8);
+    }
+
+    /** Liefert {@code iv || ciphertext || tag} in einem einzigen Array. */
+    public byte[] encrypt(byte[] plaintext) {
+        return encrypt(key, plaintext);
+    }
+
+    /** Wie {@link #encrypt(byte[])}, aber mit beliebigem Schlüssel (Envelope-Verschlüsselung). */
+    public byte[] encrypt(SecretKey key, byte[] plaintext) {
+        long t0 = System.nanoTime();
         try {
+            Cipher cipher = CIPHER.get();
             byte[] iv = new byte[IV_LEN];
             rnd.nextBytes(iv);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, iv));
+            byte[] out = new byte[IV_LEN + plaintext.length + GCM_TAG_LEN];
+            System.arraycopy(iv, 0, out, 0, IV_LEN);
+            cipher.doFinal(plaintext, 0, plaintext.length, out, IV_LEN);
+            return out;
+        } catch (Exception e) {
+            throw new RuntimeException("Encrypt failed", e);
+        } finally {
+            encryptTimer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+        }
+    }
 
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(
-                    Cipher.ENCRYPT_MODE,
-                    new SecretKeySpec(key, "AES"),
-                    new GCMParameterSpec(GCM_TAG_BITS, iv)
-            );
-
-            byte[] ct = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+    /** Erwartet {@code iv || ciphertext || tag}; entschlüsselt ohne Zwischenkopien. */
+    public byte[] decrypt(byte[] in) {
+        return decrypt(key, in);
+    }
 
-            byte[] out = new byte[iv.length + ct.length];
-            System.arraycopy(iv, 0, out, 0, iv.length);
-            System.arraycopy(ct, 0, out, iv.length, ct.length);
+    public byte[] decrypt(SecretKey key, byte[] in) {
+        if (in.length <= IV_LEN) {
+            throw new IllegalArgumentException("Ciphertext zu kurz");
+        }
+        long t0 = System.nanoTime();
+        try {
+            Cipher cipher = CIPHER.get();
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, in, 0, IV_LEN));
+            return cipher.doFinal(in, IV_LEN, in.length - IV_LEN);
+        } catch (Exception e) {
+            throw new RuntimeException("Decrypt failed", e);
+        } finally {
+            decryptTimer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+        }
+    }
 
-            return Base64.getEncoder().encodeToString(out);
+    /**
+     * Verschlüsselt {@code in.remaining()} Bytes nach {@code out} (Format wie {@link #encrypt(byte[])}).
+     * Gibt die Anzahl geschriebener Bytes zurück.
+     */
+    public int encrypt(ByteBuffer in, ByteBuffer out) {
+        try {
+            Cipher cipher = CIPHER.get();
+            byte[] iv = new byte[IV_LEN];
+            rnd.nextBytes(iv);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, iv));
+            out.put(iv);
+            return IV_LEN + cipher.doFinal(in, out);
         } catch (Exception e) {
             throw new RuntimeException("Encrypt failed", e);
         }
     }
 
-    public String decrypt(String b64) {
-        if (b64 == null) return null;
+    /** Entschlüsselt {@code iv || ciphertext || tag} aus {@code in} nach {@code out}; gibt die Klartextlänge zurück. */
+    public int decrypt(ByteBuffer in, ByteBuffer out) {
+        if (in.remaining() <= IV_LEN) {
+            throw new IllegalArgumentException("Ciphertext zu kurz");
+        }
         try {
-            byte[] in = Base64.getDecoder().decode(b64);
-            if (in.length <= IV_LEN) {
-                throw new IllegalArgumentException("Ciphertext zu kurz");
-            }
-
+            Cipher cipher = CIPHER.get();
             byte[] iv = new byte[IV_LEN];
-            byte[] ct = new byte[in.length - IV_LEN];
-            System.arraycopy(in, 0, iv, 0, IV_LEN);
-            System.arraycopy(in, IV_LEN, ct, 0, ct.length);
-
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(
-                    Cipher.DECRYPT_MODE,
-                    new SecretKeySpec(key, "AES"),
-                    new GCMParameterSpec(GCM_TAG_BITS, iv)
-            );
-
-            byte[] pt = cipher.doFinal(ct);
-            return new String(pt, StandardCharsets.UTF_8);
+            in.get(iv);
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, iv));
+            return cipher.doFinal(in, out);
         } catch (Exception e) {
             throw new RuntimeException("Decrypt failed", e);
         }
     }
+
+    /** Frischer zufälliger AES-256-Schlüssel (z. B. Data-Key pro User). */
+    public SecretKey newKey() {
+        byte[] raw = new byte[32];
+        rnd.nextBytes(raw);
+        return new SecretKeySpec(raw, "AES");
+    }
+
+    /** Batch-Variante: eine Cipher-Instanz für alle Werte, {@code null} bleibt {@code null}. */
+    public List<String> encryptAll(List<String> plaintexts) {
+        List<String> out = new ArrayList<>(plaintexts.size());
+        for (String p : plaintexts) out.add(encrypt(p));
+        return out;
+    }
+
+    public List<String> decryptAll(List<String> ciphertexts) {
+        List<String> out = new ArrayList<>(ciphertexts.size());
+        for (String c : ciphertexts) out.add(decrypt(c));
+        return out;
+    }
 }
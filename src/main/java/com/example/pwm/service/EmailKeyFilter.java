@@ -0,0 +1,93 @@
+package com.example.pwm.service;
+
+import com.example.pwm.repo.UserAccountRepository;
+import com.example.pwm.util.BloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.stream.Stream;
+
+/**
+ * Bloom-Filter aller registrierten E-Mail-Schlüssel. Logins für nicht existierende Adressen
+ * werden damit meist ohne DB-Roundtrip abgewiesen. Solange der Filter nicht aufgewärmt ist
+ * (oder {@code app.email-filter.enabled=false}, der Default), gilt jeder Schlüssel als "vielleicht vorhanden".
+ * <p>
+ * Nur für eine einzelne Instanz einschalten: Registrierungen auf anderen Instanzen sieht der Filter erst
+ * nach dem nächsten periodischen Neuaufbau, bis dahin bekämen diese User beim Login 401.
+ */
+@Component
+public class EmailKeyFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(EmailKeyFilter.class);
+
+    private final UserAccountRepository users;
+    private final TransactionTemplate readOnlyTx;
+    private final boolean enabled;
+    private final long expected;
+    private final double fpp;
+
+    private volatile BloomFilter filter;
+
+    public EmailKeyFilter(UserAccountRepository users,
+                          PlatformTransactionManager txManager,
+                          @Value("${app.email-filter.enabled:false}") boolean enabled,
+                          @Value("${app.email-filter.expected-insertions:1000000}") long expected,
+                          @Value("${app.email-filter.fpp:0.01}") double fpp) {
+        this.users = users;
+        this.readOnlyTx = new TransactionTemplate(txManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.enabled = enabled;
+        this.expected = expected;
+        this.fpp = fpp;
+    }
+
+    public boolean mightExist(String emailKey) {
+        BloomFilter f = filter;
+        return f == null || f.mightContain(emailKey);
+    }
+
+    public void add(String emailKey) {
+        BloomFilter f = filter;
+        if (f != null) f.put(emailKey);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${app.email-filter.refresh:PT10M}", initialDelayString = "${app.email-filter.refresh:PT10M}")
+    public void rebuild() {
+        if (!enabled) return;
+        try {
+            long t0 = System.nanoTime();
+            Instant started = Instant.now();
+            long count = users.count();
+            BloomFilter next = BloomFilter.create(Math.max(expected, count * 2), fpp);
+            readOnlyTx.executeWithoutResult(s -> {
+                try (Stream<String> keys = users.streamAllEmailKeys()) {
+                    keys.forEach(next::put);
+                }
+            });
+            filter = next;
+            // Registrierungen während des Aufbaus landeten evtl. nur im alten Filter: nachziehen
+            readOnlyTx.executeWithoutResult(s -> {
+                try (Stream<String> keys = users.streamEmailKeysCreatedAfter(started.minusSeconds(5))) {
+                    keys.forEach(next::put);
+                }
+            });
+            log.info("E-Mail-Filter aufgebaut: {} Schlüssel, {} Bits, {} ms",
+                    count, next.bitSize(), (System.nanoTime() - t0) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.warn("E-Mail-Filter konnte nicht aufgebaut werden: {}", e.getMessage());
+        }
+    }
+}
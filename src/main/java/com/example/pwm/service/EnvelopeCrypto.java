@@ -0,0 +1,155 @@
+package com.example.pwm.service;
+
+import com.example.pwm.repo.UserAccountRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Envelope-Verschlüsselung für Userdaten (TOTP-Secret, Tresor): jeder User hat einen eigenen Data-Key (DEK),
+ * der mit dem aktiven Master-Key gewrappt in {@code users.dek_wrapped} liegt ({@code k<version>:<base64>}).
+ * <p>
+ * Chiffrate: {@code e1:<base64(iv||ct||tag)>} mit dem DEK des Users. Werte ohne Präfix stammen aus der Zeit
+ * vor der Umstellung (statischer {@code APP_ENCRYPTION_KEY}) und werden weiter gelesen, bis der
+ * {@link KeyRotationJob} sie umgeschlüsselt hat. Master-Key-Rotation betrifft damit nur die DEKs.
+ */
+@Service
+public class EnvelopeCrypto {
+
+    static final String DATA_PREFIX = "e1:";
+
+    public record NewDataKey(SecretKey key, String wrapped, int kekVersion) {}
+
+    private final CryptoService crypto;
+    private final MasterKeyRing ring;
+    private final UserAccountRepository users;
+    private final Cache<UUID, SecretKey> deks;
+
+    public EnvelopeCrypto(CryptoService crypto,
+                          MasterKeyRing ring,
+                          UserAccountRepository users,
+                          @Value("${app.encryption.dek-cache-size:10000}") long cacheSize,
+                          @Value("${app.encryption.dek-cache-ttl:PT30M}") Duration cacheTtl) {
+        this.crypto = crypto;
+        this.ring = ring;
+        this.users = users;
+        this.deks = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterAccess(cacheTtl)
+                .build();
+    }
+
+    // ---------- Daten ----------
+
+    public String encrypt(UUID userId, String plaintext) {
+        if (plaintext == null) return null;
+        return encrypt(dataKey(userId), plaintext);
+    }
+
+    /** Für die Registrierung, bevor der User eine ID hat (siehe {@link #newDataKey()}). */
+    public String encrypt(SecretKey dek, String plaintext) {
+        byte[] ct = crypto.encrypt(dek, plaintext.getBytes(StandardCharsets.UTF_8));
+        return DATA_PREFIX + Base64.getEncoder().encodeToString(ct);
+    }
+
+    public String decrypt(UUID userId, String ciphertext) {
+        if (ciphertext == null) return null;
+        if (!isCurrent(ciphertext)) return crypto.decrypt(ciphertext);
+        return decrypt(dataKey(userId), ciphertext);
+    }
+
+    /** Batch-Varianten: ein DEK-Lookup für alle Werte. */
+    public List<String> encryptAll(UUID userId, List<String> plaintexts) {
+        SecretKey dek = dataKey(userId);
+        List<String> out = new ArrayList<>(plaintexts.size());
+        for (String p : plaintexts) out.add(p == null ? null : encrypt(dek, p));
+        return out;
+    }
+
+    public List<String> decryptAll(UUID userId, List<String> ciphertexts) {
+        SecretKey dek = null;
+        List<String> out = new ArrayList<>(ciphertexts.size());
+        for (String c : ciphertexts) {
+            if (c == null) {
+                out.add(null);
+            } else if (isCurrent(c)) {
+                if (dek == null) dek = dataKey(userId);
+                out.add(decrypt(dek, c));
+            } else {
+                out.add(crypto.decrypt(c));
+            }
+        }
+        return out;
+    }
+
+    public static boolean isCurrent(String ciphertext) {
+        return ciphertext.startsWith(DATA_PREFIX);
+    }
+
+    private String decrypt(SecretKey dek, String ciphertext) {
+        byte[] ct = Base64.getDecoder().decode(ciphertext.substring(DATA_PREFIX.length()));
+        return new String(crypto.decrypt(dek, ct), StandardCharsets.UTF_8);
+    }
+
+    // ---------- Data-Keys ----------
+
+    /** Neuer DEK, bereits mit dem aktiven Master-Key gewrappt; nach dem Speichern {@link #remember} aufrufen. */
+    public NewDataKey newDataKey() {
+        SecretKey dek = crypto.newKey();
+        return new NewDataKey(dek, wrap(dek), ring.activeVersion());
+    }
+
+    public void remember(UUID userId, SecretKey dek) {
+        deks.put(userId, dek);
+    }
+
+    /** Entpackter DEK aus dem Cache; legt für Bestandsuser ohne DEK beim ersten Zugriff einen an. */
+    SecretKey dataKey(UUID userId) {
+        return deks.get(userId, this::loadOrCreate);
+    }
+
+    private SecretKey loadOrCreate(UUID userId) {
+        String wrapped = users.findDekWrappedById(userId).orElse(null);
+        if (wrapped == null) {
+            NewDataKey k = newDataKey();
+            if (users.setDekIfAbsent(userId, k.wrapped(), k.kekVersion()) == 1) return k.key();
+            wrapped = users.findDekWrappedById(userId)
+                    .orElseThrow(() -> new IllegalStateException("Kein Data-Key für User " + userId));
+        }
+        return unwrap(wrapped);
+    }
+
+    /** Wrapt den DEK mit dem aktiven Master-Key neu; {@code null}, wenn er schon aktuell ist. */
+    NewDataKey rewrap(String wrapped) {
+        if (kekVersion(wrapped) == ring.activeVersion()) return null;
+        SecretKey dek = unwrap(wrapped);
+        return new NewDataKey(dek, wrap(dek), ring.activeVersion());
+    }
+
+    String wrap(SecretKey dek) {
+        byte[] ct = crypto.encrypt(ring.active(), dek.getEncoded());
+        return "k" + ring.activeVersion() + ":" + Base64.getEncoder().encodeToString(ct);
+    }
+
+    SecretKey unwrap(String wrapped) {
+        int sep = wrapped.indexOf(':');
+        byte[] ct = Base64.getDecoder().decode(wrapped.substring(sep + 1));
+        return new SecretKeySpec(crypto.decrypt(ring.get(kekVersion(wrapped)), ct), "AES");
+    }
+
+    static int kekVersion(String wrapped) {
+        int sep = wrapped.indexOf(':');
+        if (!wrapped.startsWith("k") || sep < 2) throw new IllegalArgumentException("ungültiger gewrappter Data-Key");
+        return Integer.parseInt(wrapped.substring(1, sep));
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.pwm.service;
+
+/** Wird geworfen, wenn der Hashing-Pool samt Warteschlange voll ist (→ 503 + Retry-After). */
+public class HashingSaturatedException extends RuntimeException {
+
+    private final long retryAfterSeconds;
+
+    public HashingSaturatedException(long retryAfterSeconds) {
+        super("Passwort-Hashing ausgelastet");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
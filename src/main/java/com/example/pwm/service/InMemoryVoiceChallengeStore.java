@@ -0,0 +1,187 @@
+package com.example.pwm.service;
+
+import com.example.pwm.repo.VoiceChallengeView;
+import com.example.pwm.repo.VoiceLinkCodeView;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Standard-Ablage im Heap: Link-Codes und Challenges leben nur Minuten, deshalb keine
+ * DB-Schreibzugriffe. Abgelaufene Einträge räumt ein {@link TimingWheel} ab.
+ * Nur für den Betrieb mit einer Instanz geeignet – sonst {@code app.voice.store=jpa}.
+ */
+@Component
+@ConditionalOnProperty(name = "app.voice.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryVoiceChallengeStore implements VoiceChallengeStore {
+
+    /** Offene Challenges pro User; ältere werden verdrängt, damit ein Client die Liste nicht bis zum Ablauf aufblähen kann. */
+    static final int MAX_CHALLENGES_PER_USER = 5;
+
+    private record LinkEntry(UUID userId, Instant expiresAt) {}
+
+    private static final class Challenge {
+        final String code;
+        final Instant createdAt;
+        final Instant expiresAt;
+        int attempts;
+        boolean verified;
+        Instant verifiedAt;
+        String deviceId;
+
+        Challenge(String code, Instant createdAt, Instant expiresAt) {
+            this.code = code;
+            this.createdAt = createdAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /** Challenges eines Users; Zugriff nur innerhalb von {@code compute*} der Map. */
+    private static final class UserChallenges {
+        final List<Challenge> items = new ArrayList<>(2);
+    }
+
+    private final ConcurrentHashMap<String, LinkEntry> linkCodes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, UserChallenges> challenges = new ConcurrentHashMap<>();
+    private final TimingWheel wheel = new TimingWheel(1024, "voice-expiry");
+
+    @Override
+    public boolean saveLinkCode(UUID userId, String code, Instant expiresAt) {
+        LinkEntry entry = new LinkEntry(userId, expiresAt);
+        Instant now = Instant.now();
+        LinkEntry current = linkCodes.compute(code, (k, old) ->
+                old == null || !old.expiresAt().isAfter(now) ? entry : old);
+        if (current != entry) return false;
+        wheel.schedule(expiresAt, () -> linkCodes.remove(code, entry));
+        return true;
+    }
+
+    @Override
+    public Optional<UUID> findLinkCodeOwner(String code, Instant now) {
+        LinkEntry e = linkCodes.get(code);
+        if (e == null || !e.expiresAt().isAfter(now)) return Optional.empty();
+        return Optional.of(e.userId());
+    }
+
+    @Override
+    public void deleteLinkCode(String code) {
+        linkCodes.remove(code);
+    }
+
+    @Override
+    public void saveChallenge(UUID userId, String code, Instant createdAt, Instant expiresAt) {
+        challenges.compute(userId, (k, uc) -> {
+            if (uc == null) uc = new UserChallenges();
+            uc.items.removeIf(c -> !c.expiresAt.isAfter(createdAt));
+            while (uc.items.size() >= MAX_CHALLENGES_PER_USER) {
+                // älteste offene zuerst; eine verifizierte wird noch für finalize gebraucht
+                Challenge victim = uc.items.stream().filter(c -> !c.verified).findFirst().orElse(uc.items.get(0));
+                uc.items.remove(victim);
+            }
+            uc.items.add(new Challenge(code, createdAt, expiresAt));
+            return uc;
+        });
+        wheel.schedule(expiresAt, () -> purge(userId));
+    }
+
+    @Override
+    public boolean markVerified(UUID userId, String code, String deviceId, Instant now) {
+        boolean[] hit = {false};
+        challenges.computeIfPresent(userId, (k, uc) -> {
+            for (Challenge c : uc.items) {
+                if (!c.verified && c.attempts < MAX_CODE_ATTEMPTS && c.expiresAt.isAfter(now) && c.code.equals(code)) {
+                    c.verified = true;
+                    c.verifiedAt = now;
+                    c.deviceId = deviceId;
+                    hit[0] = true;
+                    return uc;
+                }
+            }
+            for (Challenge c : uc.items) {
+                if (!c.verified && c.expiresAt.isAfter(now)) c.attempts++;
+            }
+            return uc;
+        });
+        return hit[0];
+    }
+
+    @Override
+    public boolean hasVerified(UUID userId, Instant now) {
+        boolean[] hit = {false};
+        challenges.computeIfPresent(userId, (k, uc) -> {
+            hit[0] = uc.items.stream().anyMatch(c -> c.verified && c.expiresAt.isAfter(now));
+            return uc;
+        });
+        return hit[0];
+    }
+
+    @Override
+    public boolean consumeVerified(UUID userId, Instant now) {
+        boolean[] hit = {false};
+        challenges.computeIfPresent(userId, (k, uc) -> {
+            hit[0] = uc.items.stream().anyMatch(c -> c.verified && c.expiresAt.isAfter(now));
+            return hit[0] ? null : uc;
+        });
+        return hit[0];
+    }
+
+    @Override
+    public void deleteAllChallenges(UUID userId) {
+        challenges.remove(userId);
+    }
+
+    @Override
+    public Map<UUID, List<VoiceChallengeView>> findChallenges(Collection<UUID> userIds, Instant now) {
+        Map<UUID, List<VoiceChallengeView>> out = new HashMap<>();
+        for (UUID userId : userIds) {
+            challenges.computeIfPresent(userId, (k, uc) -> {
+                for (Challenge c : uc.items) {
+                    if (!c.expiresAt.isAfter(now)) continue;
+                    out.computeIfAbsent(userId, u -> new ArrayList<>())
+                            .add(new VoiceChallengeView(userId, c.code, c.createdAt, c.expiresAt, c.verified, c.attempts));
+                }
+                return uc;
+            });
+        }
+        return out;
+    }
+
+    @Override
+    public Map<UUID, List<VoiceLinkCodeView>> findLinkCodes(Collection<UUID> userIds, Instant now) {
+        // nach Code indiziert; die Map enthält nur Codes der letzten Minuten, ein Scan ist billig
+        Set<UUID> wanted = new HashSet<>(userIds);
+        Map<UUID, List<VoiceLinkCodeView>> out = new HashMap<>();
+        linkCodes.forEach((code, e) -> {
+            if (wanted.contains(e.userId()) && e.expiresAt().isAfter(now)) {
+                out.computeIfAbsent(e.userId(), u -> new ArrayList<>())
+                        .add(new VoiceLinkCodeView(e.userId(), code, e.expiresAt()));
+            }
+        });
+        return out;
+    }
+
+    private void purge(UUID userId) {
+        Instant now = Instant.now();
+        challenges.computeIfPresent(userId, (k, uc) -> {
+            uc.items.removeIf(c -> !c.expiresAt.isAfter(now));
+            return uc.items.isEmpty() ? null : uc;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        wheel.close();
+    }
+}
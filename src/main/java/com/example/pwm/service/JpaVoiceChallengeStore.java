@@ -0,0 +1,121 @@
+package com.example.pwm.service;
+
+import com.example.pwm.entity.VoiceChallenge;
+import com.example.pwm.repo.UserAccountRepository;
+import com.example.pwm.repo.VoiceChallengeRepository;
+import com.example.pwm.repo.VoiceChallengeView;
+import com.example.pwm.repo.VoiceLinkCodeRepository;
+import com.example.pwm.repo.VoiceLinkCodeView;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/** Persistente Variante über {@code voice_link_codes}/{@code voice_challenges}; nötig bei mehreren Instanzen. */
+@Component
+@ConditionalOnProperty(name = "app.voice.store", havingValue = "jpa")
+public class JpaVoiceChallengeStore implements VoiceChallengeStore {
+
+    private final UserAccountRepository users;
+    private final VoiceLinkCodeRepository linkCodes;
+    private final VoiceChallengeRepository challenges;
+
+    public JpaVoiceChallengeStore(UserAccountRepository users,
+                                  VoiceLinkCodeRepository linkCodes,
+                                  VoiceChallengeRepository challenges) {
+        this.users = users;
+        this.linkCodes = linkCodes;
+        this.challenges = challenges;
+    }
+
+    @Override
+    @Transactional
+    public boolean saveLinkCode(UUID userId, String code, Instant expiresAt) {
+        // Partitioniert ist nur (code, expires_at) eindeutig: gültige Duplikate vorher ausschließen
+        if (linkCodes.existsByCodeAndExpiresAtAfter(code, Instant.now())) return false;
+        return linkCodes.insertIfAbsent(UUID.randomUUID(), userId, code, expiresAt) == 1;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<UUID> findLinkCodeOwner(String code, Instant now) {
+        return linkCodes.findFirstByCodeAndExpiresAtAfter(code, now).map(l -> l.getUser().getId());
+    }
+
+    @Override
+    @Transactional
+    public void deleteLinkCode(String code) {
+        linkCodes.deleteAllByCode(code);
+    }
+
+    @Override
+    @Transactional
+    public void saveChallenge(UUID userId, String code, Instant createdAt, Instant expiresAt) {
+        VoiceChallenge ch = new VoiceChallenge();
+        ch.setUser(users.getReferenceById(userId));
+        ch.setCode(code);
+        ch.setCreatedAt(createdAt);
+        ch.setExpiresAt(expiresAt);
+        ch.setVerified(false);
+        ch.setAttempts(0);
+        challenges.save(ch);
+    }
+
+    @Override
+    @Transactional
+    public boolean markVerified(UUID userId, String code, String deviceId, Instant now) {
+        var opt = challenges.findFirstByUser_IdAndCodeAndVerifiedFalseAndAttemptsLessThanAndExpiresAtAfter(
+                userId, code, MAX_CODE_ATTEMPTS, now);
+        if (opt.isEmpty()) {
+            challenges.incrementPendingAttempts(userId, now);
+            return false;
+        }
+        VoiceChallenge ch = opt.get();
+        ch.setVerified(true);
+        ch.setVerifiedAt(now);
+        ch.setDeviceId(deviceId);
+        challenges.save(ch);
+        return true;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean hasVerified(UUID userId, Instant now) {
+        return challenges.existsByUser_IdAndVerifiedTrueAndExpiresAtAfter(userId, now);
+    }
+
+    @Override
+    @Transactional
+    public boolean consumeVerified(UUID userId, Instant now) {
+        if (challenges.deleteVerifiedByUserId(userId, now) == 0) return false;
+        challenges.deleteAllByUserId(userId);
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public void deleteAllChallenges(UUID userId) {
+        challenges.deleteAllByUserId(userId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<UUID, List<VoiceChallengeView>> findChallenges(Collection<UUID> userIds, Instant now) {
+        return challenges.findViewsByUserIds(userIds, now).stream()
+                .collect(Collectors.groupingBy(VoiceChallengeView::userId));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<UUID, List<VoiceLinkCodeView>> findLinkCodes(Collection<UUID> userIds, Instant now) {
+        return linkCodes.findViewsByUserIds(userIds, now).stream()
+                .collect(Collectors.groupingBy(VoiceLinkCodeView::userId));
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.pwm.service;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.AlgorithmMismatchException;
+import com.auth0.jwt.interfaces.ECDSAKeyProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.Signature;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Signierschlüssel für JWTs.
+ * <p>
+ * {@code JWT_SIGNING_KEYS="<kid>:<pkcs8-b64>:<x509-b64>,<kid>::<x509-b64>"} – ES256-Schlüsselpaare (P-256),
+ * Einträge ohne privaten Teil werden nur noch geprüft und im JWKS veröffentlicht. Signiert wird mit
+ * {@code JWT_ACTIVE_KID} (Standard: letzter Eintrag mit privatem Schlüssel), die {@code kid} steht im Header.
+ * Ohne {@code JWT_SIGNING_KEYS} wird wie bisher per HS256 mit {@code JWT_SECRET} signiert; ist beides gesetzt,
+ * werden HS256-Tokens nur noch geprüft (Übergang, bis alte Tokens abgelaufen sind).
+ */
+@Component
+public class JwtKeyRing implements ECDSAKeyProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(JwtKeyRing.class);
+
+    private record KeyPair(ECPrivateKey privateKey, ECPublicKey publicKey) {}
+
+    private final Map<String, KeyPair> keys;
+    private final String activeKid;
+    private final Algorithm signing;
+    private final JWTVerifier es256;
+    private final JWTVerifier hs256;
+
+    public JwtKeyRing(@Value("${app.jwt.signing-keys:${JWT_SIGNING_KEYS:}}") String spec,
+                      @Value("${app.jwt.active-kid:${JWT_ACTIVE_KID:}}") String activeKid,
+                      @Value("${app.jwt.secret:${JWT_SECRET:}}") String secret) {
+        LinkedHashMap<String, KeyPair> parsed = new LinkedHashMap<>();
+        String lastSigning = null;
+        if (spec != null && !spec.isBlank()) {
+            for (String entry : spec.split(",")) {
+                String[] parts = entry.trim().split(":", -1);
+                if (parts.length != 3 || parts[0].isBlank() || parts[2].isBlank()) {
+                    throw new IllegalStateException("JWT-Key-Eintrag muss <kid>:<pkcs8-b64>:<x509-b64> sein");
+                }
+                KeyPair kp = new KeyPair(parts[1].isBlank() ? null : privateKey(parts[1]), publicKey(parts[2]));
+                if (kp.privateKey() != null) {
+                    checkPair(parts[0], kp);
+                    lastSigning = parts[0];
+                }
+                parsed.put(parts[0], kp);
+            }
+        }
+        this.keys = Collections.unmodifiableMap(parsed);
+
+        Algorithm hmac = null;
+        if (secret != null && !secret.isBlank()) {
+            if (secret.getBytes(StandardCharsets.UTF_8).length < 32) {
+                throw new IllegalStateException("JWT_SECRET ist zu kurz (>=32 Zeichen benötigt)");
+            }
+            hmac = Algorithm.HMAC256(secret);
+        }
+        this.hs256 = hmac == null ? null : JWT.require(hmac).build();
+
+        if (keys.isEmpty()) {
+            if (hmac == null) throw new IllegalStateException("JWT_SECRET fehlt (oder JWT_SIGNING_KEYS setzen)");
+            log.warn("Keine JWT_SIGNING_KEYS konfiguriert: signiere mit HS256, JWKS bleibt leer");
+            this.activeKid = null;
+            this.signing = hmac;
+            this.es256 = null;
+            return;
+        }
+        this.activeKid = activeKid != null && !activeKid.isBlank() ? activeKid : lastSigning;
+        if (this.activeKid == null) throw new IllegalStateException("Kein JWT-Key mit privatem Schlüssel konfiguriert");
+        KeyPair active = keys.get(this.activeKid);
+        if (active == null || active.privateKey() == null) {
+            throw new IllegalStateException("Aktiver JWT-Key '" + this.activeKid + "' fehlt oder hat keinen privaten Schlüssel");
+        }
+        this.signing = Algorithm.ECDSA256(this);
+        this.es256 = JWT.require(signing).build();
+    }
+
+    /** Signiert neue Tokens; bei ES256 setzt java-jwt die {@code kid} aus {@link #getPrivateKeyId()}. */
+    public Algorithm signingAlgorithm() {
+        return signing;
+    }
+
+    /** Verifier passend zum {@code alg}-Header; alles andere (z. B. {@code none}) wird abgewiesen. */
+    public JWTVerifier verifier(String alg) {
+        JWTVerifier v = switch (alg == null ? "" : alg) {
+            case "ES256" -> es256;
+            case "HS256" -> hs256;
+            default -> null;
+        };
+        if (v == null) throw new AlgorithmMismatchException("JWT-Algorithmus " + alg + " wird nicht akzeptiert");
+        return v;
+    }
+
+    /** Öffentliche Schlüssel als JWK-Liste (RFC 7517/7518), aktiver und ältere Schlüssel. */
+    public List<Map<String, Object>> publicJwks() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        keys.forEach((kid, kp) -> {
+            ECPublicKey pub = kp.publicKey();
+            Map<String, Object> jwk = new LinkedHashMap<>();
+            jwk.put("kty", "EC");
+            jwk.put("crv", "P-256");
+            jwk.put("kid", kid);
+            jwk.put("use", "sig");
+            jwk.put("alg", "ES256");
+            jwk.put("x", coordinate(pub.getW().getAffineX()));
+            jwk.put("y", coordinate(pub.getW().getAffineY()));
+            out.add(jwk);
+        });
+        return out;
+    }
+
+    @Override
+    public ECPublicKey getPublicKeyById(String keyId) {
+        KeyPair kp = keyId == null ? null : keys.get(keyId);
+        return kp == null ? null : kp.publicKey();
+    }
+
+    @Override
+    public ECPrivateKey getPrivateKey() {
+        return keys.get(activeKid).privateKey();
+    }
+
+    @Override
+    public String getPrivateKeyId() {
+        return activeKid;
+    }
+
+    /** Fängt vertauschte oder nicht zusammengehörende Schlüssel beim Start ab. */
+    private static void checkPair(String kid, KeyPair kp) {
+        try {
+            byte[] probe = kid.getBytes(StandardCharsets.UTF_8);
+            Signature s = Signature.getInstance("SHA256withECDSA");
+            s.initSign(kp.privateKey());
+            s.update(probe);
+            byte[] sig = s.sign();
+            s.initVerify(kp.publicKey());
+            s.update(probe);
+            if (!s.verify(sig)) throw new IllegalStateException("JWT-Key '" + kid + "': öffentlicher Schlüssel passt nicht");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("JWT-Key '" + kid + "' ist ungültig", e);
+        }
+    }
+
+    private static ECPrivateKey privateKey(String b64) {
+        try {
+            return (ECPrivateKey) KeyFactory.getInstance("EC")
+                    .generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(b64)));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Privater JWT-Key ist kein PKCS#8-EC-Schlüssel", e);
+        }
+    }
+
+    private static ECPublicKey publicKey(String b64) {
+        try {
+            ECPublicKey k = (ECPublicKey) KeyFactory.getInstance("EC")
+                    .generatePublic(new X509EncodedKeySpec(Base64.getDecoder().decode(b64)));
+            if (k.getParams().getCurve().getField().getFieldSize() != 256) {
+                throw new IllegalStateException("JWT-Key muss auf P-256 liegen (ES256)");
+            }
+            return k;
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new IllegalStateException("Öffentlicher JWT-Key ist kein X.509-EC-Schlüssel", e);
+        }
+    }
+
+    /** Koordinate als vorzeichenlose 32 Byte, base64url ohne Padding. */
+    private static String coordinate(BigInteger v) {
+        byte[] raw = v.toByteArray();
+        byte[] out = new byte[32];
+        int n = Math.min(raw.length, 32);
+        System.arraycopy(raw, raw.length - n, out, 32 - n, n);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(out);
+    }
+}
@@ -1,78 +1,210 @@
 package com.example.pwm.service;
 
 import com.auth0.jwt.JWT;
-import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.exceptions.TokenExpiredException;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class JwtService {
 
-    private final Algorithm alg;
+    /** {@code aud} der Access-Tokens; Dienste, die per JWKS lokal prüfen, verlangen genau diese Audience. */
+    public static final String ACCESS_AUDIENCE = "pwm-api";
+    /** {@code aud} der tmp-Tokens zwischen Passwort und TOTP; nur {@code /api/auth/totp-verify} nimmt sie an. */
+    public static final String TMP_AUDIENCE = "pwm-tmp";
+    private static final String TMP_PREFIX = "tmp:";
 
-    public JwtService(@Value("${app.jwt.secret:}") String secretFromProps) {
-        String secret = (secretFromProps != null && !secretFromProps.isBlank())
-                ? secretFromProps
-                : System.getenv("JWT_SECRET");
-        if (secret == null || secret.isBlank()) {
-            throw new IllegalStateException("JWT_SECRET fehlt");
-        }
-        if (secret.getBytes(StandardCharsets.UTF_8).length < 32) {
-            throw new IllegalStateException("JWT_SECRET ist zu kurz (>=32 Zeichen benötigt)");
+    private final JwtKeyRing keys;
+
+    /**
+     * Bereits verifizierte Tokens, Schlüssel = SHA-256 des Tokens; Einträge leben höchstens bis {@code exp}.
+     * {@code null} bei {@code app.jwt.cache-size: 0}, dann läuft jedes Token durch den Verifier.
+     */
+    private final Cache<String, Verified> verified;
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
         }
-        this.alg = Algorithm.HMAC256(secret);
+    });
+
+    private record Verified(String subject, String sessionId, long expiresAtMillis, boolean tmp) {}
+
+    /** Geprüftes Access-Token; {@code sessionId} fehlt bei Tokens ohne {@code sid}-Claim. */
+    public record AccessToken(UUID userId, UUID sessionId) {}
+
+    private final Timer issueTimer;
+    private final Timer verifyTimer;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+
+    public JwtService(MeterRegistry registry,
+                      JwtKeyRing keys,
+                      @Value("${app.jwt.cache-size:10000}") long cacheSize) {
+        this.keys = keys;
+        this.issueTimer = Timer.builder("pwm.jwt").tag("op", "issue").register(registry);
+        this.verifyTimer = Timer.builder("pwm.jwt").tag("op", "verify").register(registry);
+        this.cacheHits = Counter.builder("pwm.jwt.cache").tag("result", "hit").register(registry);
+        this.cacheMisses = Counter.builder("pwm.jwt.cache").tag("result", "miss").register(registry);
+        this.verified = cacheSize <= 0 ? null : Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(new Expiry<String, Verified>() {
+                    @Override
+                    public long expireAfterCreate(String key, Verified v, long currentTime) {
+                        long ms = v.expiresAtMillis() - System.currentTimeMillis();
+                        return Duration.ofMillis(Math.max(0, ms)).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Verified v, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Verified v, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
     }
 
-    public String issueToken(UUID userId, Duration ttl) {
-        Instant now = Instant.now();
-        return JWT.create()
-                .withSubject(userId.toString())
-                .withIssuedAt(Date.from(now))
-                .withExpiresAt(Date.from(now.plus(ttl)))
-                .sign(alg);
+    /** Access-Token einer Session; über {@code sid} widerrufbar (siehe {@link TokenRevocationList}). */
+    public String issueToken(UUID userId, UUID sessionId, Duration ttl) {
+        return issueTimer.record(() -> {
+            Instant now = Instant.now();
+            return JWT.create()
+                    .withSubject(userId.toString())
+                    .withAudience(ACCESS_AUDIENCE)
+                    .withClaim("sid", sessionId.toString())
+                    .withIssuedAt(Date.from(now))
+                    .withExpiresAt(Date.from(now.plus(ttl)))
+                    .sign(keys.signingAlgorithm());
+        });
     }
 
+    /** Login-Zwischenschritt; eigene Audience, damit es weder hier noch bei externen Prüfern als Access-Token gilt. */
     public String issueTmpToken(UUID userId, Duration ttl) {
-        Instant now = Instant.now();
-        return JWT.create()
-                .withSubject("tmp:" + userId)
-                .withIssuedAt(Date.from(now))
-                .withExpiresAt(Date.from(now.plus(ttl)))
-                .sign(alg);
+        return issueTimer.record(() -> {
+            Instant now = Instant.now();
+            return JWT.create()
+                    .withSubject(TMP_PREFIX + userId)
+                    .withAudience(TMP_AUDIENCE)
+                    .withIssuedAt(Date.from(now))
+                    .withExpiresAt(Date.from(now.plus(ttl)))
+                    .sign(keys.signingAlgorithm());
+        });
     }
 
     public UUID parseUserId(String token) {
-        DecodedJWT jwt = JWT.require(alg).build().verify(token);
-        String sub = jwt.getSubject();
-        if (sub.startsWith("tmp:")) sub = sub.substring(4);
-        return UUID.fromString(sub);
+        return parseAccessToken(token).userId();
+    }
+
+    /** Nur Access-Tokens; tmp-Tokens werden abgelehnt. */
+    public AccessToken parseAccessToken(String token) {
+        Verified v = verified(token);
+        if (v.tmp()) throw new JWTVerificationException("tmp-Token ist kein Access-Token");
+        return new AccessToken(UUID.fromString(v.subject()), v.sessionId() == null ? null : UUID.fromString(v.sessionId()));
     }
 
     public String parseSubject(String token) {
-        return JWT.require(alg).build().verify(token).getSubject();
+        return verifiedSubject(token);
     }
 
 
-    public UUID requireUid(String token) {
-        DecodedJWT verified = JWT.require(alg).build().verify(token); // verifiziert Signatur & Ablauf
-        String sub = verified.getSubject();
-        if (sub == null || sub.isBlank()) {
-            throw new IllegalArgumentException("JWT hat kein Subject");
-        }
-        if (sub.startsWith("tmp:")) {
-            sub = sub.substring(4);
+    /** User-ID aus einem tmp-Token (Login-Zwischenschritt); Access-Tokens werden abgelehnt. */
+    public UUID requireTmpUid(String token) {
+        Verified v = verified(token); // verifiziert Signatur & Ablauf
+        if (!v.tmp()) {
+            throw new IllegalArgumentException("JWT ist kein tmp-Token");
         }
+        String sub = v.subject() == null ? "" : v.subject();
+        if (sub.startsWith(TMP_PREFIX)) sub = sub.substring(TMP_PREFIX.length());
         try {
             return UUID.fromString(sub);
         } catch (IllegalArgumentException ex) {
             throw new IllegalArgumentException("JWT-Subject ist keine gültige UUID: " + sub, ex);
         }
     }
+
+    /**
+     * Liefert das Subject eines gültigen Tokens. Wiederholt gesehene Tokens kosten nur
+     * einen SHA-256 + Hash-Lookup; nur unbekannte Tokens laufen durch den Verifier (bei ES256 teuer).
+     */
+    private String verifiedSubject(String token) {
+        return verified(token).subject();
+    }
+
+    private Verified verified(String token) {
+        long t0 = System.nanoTime();
+        try {
+            return lookupOrVerify(token);
+        } finally {
+            verifyTimer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Verified lookupOrVerify(String token) {
+        if (verified == null) return verify(token);
+        String key = digest(token);
+        Verified hit = verified.getIfPresent(key);
+        long now = System.currentTimeMillis();
+        if (hit != null) {
+            cacheHits.increment();
+            if (hit.expiresAtMillis() > now) return hit;
+            verified.invalidate(key);
+            throw new TokenExpiredException("The Token has expired on " + Instant.ofEpochMilli(hit.expiresAtMillis()) + ".",
+                    Instant.ofEpochMilli(hit.expiresAtMillis()));
+        }
+
+        cacheMisses.increment();
+        Verified v = verify(token);
+        // Tokens ohne exp werden nicht gecacht, damit der Cache nie länger gilt als das Token
+        if (v.expiresAtMillis() != Long.MAX_VALUE && v.subject() != null) {
+            verified.put(key, v);
+        }
+        return v;
+    }
+
+    private Verified verify(String token) {
+        // Verifier nach alg-Header, der Schlüssel kommt bei ES256 über die kid aus dem JwtKeyRing
+        DecodedJWT jwt = JWT.decode(token);
+        jwt = keys.verifier(jwt.getAlgorithm()).verify(jwt);
+        Instant exp = jwt.getExpiresAtAsInstant();
+        return new Verified(jwt.getSubject(), jwt.getClaim("sid").asString(),
+                exp == null ? Long.MAX_VALUE : exp.toEpochMilli(), isTmp(jwt));
+    }
+
+    /** tmp-Token an der Audience oder, bei vor Einführung der Audience ausgestellten Tokens, am Subject-Präfix. */
+    private static boolean isTmp(DecodedJWT jwt) {
+        List<String> aud = jwt.getAudience();
+        String sub = jwt.getSubject();
+        return (aud != null && aud.contains(TMP_AUDIENCE)) || (sub != null && sub.startsWith(TMP_PREFIX));
+    }
+
+    private static String digest(String token) {
+        MessageDigest md = SHA256.get();
+        md.reset();
+        return Base64.getEncoder().encodeToString(md.digest(token.getBytes(StandardCharsets.US_ASCII)));
+    }
 }
@@ -0,0 +1,142 @@
+package com.example.pwm.service;
+
+import com.example.pwm.repo.EncryptedRow;
+import com.example.pwm.repo.UserAccountRepository;
+import com.example.pwm.repo.VaultItemRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * Hintergrund-Rewrap nach einem Master-Key-Wechsel und Umschlüsselung von Altdaten (statischer Key → DEK).
+ * <p>
+ * Gedrosselt: pro Sekunde höchstens {@code app.encryption.rewrap.rows-per-second} Zeilen, jede Zeile als
+ * eigenes bedingtes UPDATE (kein langer Lock, Login-Latenz bleibt unberührt). Reihenfolge: DEKs mit altem
+ * Master-Key, dann TOTP-Secrets, dann Tresor-Einträge im Altformat. Tresor-Inhalte ändern sich dabei nicht,
+ * deshalb gibt es keinen Versionssprung für den Sync.
+ */
+@Component
+@ConditionalOnProperty(name = "app.encryption.rewrap.enabled", havingValue = "true", matchIfMissing = true)
+public class KeyRotationJob {
+
+    private static final Logger log = LoggerFactory.getLogger(KeyRotationJob.class);
+
+    /** Kleinste UUID: Cursor-Start jeder Arbeitsliste. */
+    private static final UUID START = new UUID(0, 0);
+
+    private final EnvelopeCrypto envelope;
+    private final CryptoService crypto;
+    private final int rowsPerTick;
+    private final Duration retryDelay;
+
+    private final Worklist deks;
+    private final Worklist totp;
+    private final Worklist vault;
+
+    public KeyRotationJob(UserAccountRepository users,
+                          VaultItemRepository items,
+                          EnvelopeCrypto envelope,
+                          CryptoService crypto,
+                          MasterKeyRing ring,
+                          MeterRegistry registry,
+                          @Value("${app.encryption.rewrap.rows-per-second:50}") int rowsPerSecond,
+                          @Value("${app.encryption.rewrap.retry-delay:PT10M}") Duration retryDelay) {
+        this.envelope = envelope;
+        this.crypto = crypto;
+        this.rowsPerTick = rowsPerSecond;
+        this.retryDelay = retryDelay;
+        // Der DEK selbst bleibt gleich, Cache und Daten sind nicht betroffen
+        this.deks = new Worklist("dek", registry,
+                (after, limit) -> users.findDeksNotWrappedWith(ring.activeVersion(), after, limit),
+                r -> {
+                    EnvelopeCrypto.NewDataKey k = envelope.rewrap(r.enc());
+                    return k != null && users.replaceDek(r.id(), r.enc(), k.wrapped(), k.kekVersion()) == 1;
+                });
+        this.totp = new Worklist("totp", registry, users::findLegacyTotpSecrets,
+                r -> users.replaceTotpSecret(r.id(), r.enc(), reencrypt(r)) == 1);
+        this.vault = new Worklist("vault", registry, items::findLegacyData,
+                r -> items.replaceData(r.id(), r.enc(), reencrypt(r)) == 1);
+    }
+
+    /** Ein Tick pro Sekunde mit festem Zeilenbudget. */
+    @Scheduled(fixedDelay = 1000, initialDelayString = "${app.encryption.rewrap.initial-delay:PT1M}")
+    public void tick() {
+        try {
+            int budget = rowsPerTick;
+            budget -= deks.run(budget);
+            if (budget > 0) budget -= totp.run(budget);
+            if (budget > 0) vault.run(budget);
+        } catch (RuntimeException e) {
+            log.warn("Key-Rewrap fehlgeschlagen: {}", e.getMessage());
+        }
+    }
+
+    private String reencrypt(EncryptedRow r) {
+        return envelope.encrypt(r.ownerId(), crypto.decrypt(r.enc()));
+    }
+
+    /**
+     * Eine Arbeitsliste, per ID-Cursor abgearbeitet: Zeilen, die sich nicht umschlüsseln lassen (KEK-Version nicht
+     * mehr konfiguriert, kaputter Altbestand), werden gezählt und übersprungen statt jeden Tick erneut vorne zu stehen.
+     * Am Ende der Liste geht es von vorn los; gab es Fehler, erst nach {@code retry-delay}.
+     */
+    private final class Worklist {
+        private final String kind;
+        private final BiFunction<UUID, Limit, List<EncryptedRow>> fetch;
+        private final Predicate<EncryptedRow> migrate;
+        private final Counter migrated;
+        private final Counter failed;
+
+        private UUID after = START;
+        private boolean failedThisPass;
+        private Instant pausedUntil = Instant.MIN;
+
+        Worklist(String kind, MeterRegistry registry,
+                 BiFunction<UUID, Limit, List<EncryptedRow>> fetch, Predicate<EncryptedRow> migrate) {
+            this.kind = kind;
+            this.fetch = fetch;
+            this.migrate = migrate;
+            this.migrated = rewrapCounter(registry, kind, "ok");
+            this.failed = rewrapCounter(registry, kind, "failed");
+        }
+
+        /** Gibt die Zahl der gelesenen Zeilen zurück (verbrauchtes Budget). */
+        int run(int limit) {
+            if (Instant.now().isBefore(pausedUntil)) return 0;
+            List<EncryptedRow> rows = fetch.apply(after, Limit.of(limit));
+            for (EncryptedRow r : rows) {
+                after = r.id();
+                try {
+                    if (migrate.test(r)) migrated.increment();
+                } catch (RuntimeException e) {
+                    failed.increment();
+                    failedThisPass = true;
+                    log.warn("Key-Rewrap ({}) für {} fehlgeschlagen, übersprungen: {}", kind, r.id(), e.toString());
+                }
+            }
+            if (rows.size() < limit) {
+                after = START;
+                pausedUntil = failedThisPass ? Instant.now().plus(retryDelay) : Instant.MIN;
+                failedThisPass = false;
+            }
+            return rows.size();
+        }
+    }
+
+    private static Counter rewrapCounter(MeterRegistry registry, String kind, String result) {
+        return Counter.builder("pwm.crypto.rewrap").tag("kind", kind).tag("result", result).register(registry);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.pwm.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Versionierte Master-Keys (KEKs) für das Wrappen der User-Data-Keys.
+ * <p>
+ * {@code APP_ENCRYPTION_MASTER_KEYS="1:<b64>,2:<b64>"}, aktiv ist {@code APP_ENCRYPTION_ACTIVE_KEY}
+ * (Standard: höchste Version). Ohne Konfiguration gilt {@code APP_ENCRYPTION_KEY} als Version 1.
+ * Alte Versionen müssen so lange konfiguriert bleiben, bis der Rewrap-Job durch ist.
+ */
+@Component
+public class MasterKeyRing {
+
+    private final Map<Integer, SecretKey> keys;
+    private final int active;
+
+    public MasterKeyRing(@Value("${app.encryption.master-keys:${APP_ENCRYPTION_MASTER_KEYS:}}") String spec,
+                         @Value("${app.encryption.active-key:${APP_ENCRYPTION_ACTIVE_KEY:0}}") int activeVersion,
+                         @Value("${app.encryption.key-b64:${APP_ENCRYPTION_KEY:}}") String legacyB64) {
+        TreeMap<Integer, SecretKey> parsed = new TreeMap<>();
+        if (spec != null && !spec.isBlank()) {
+            for (String entry : spec.split(",")) {
+                int sep = entry.indexOf(':');
+                if (sep <= 0) throw new IllegalStateException("Master-Key-Eintrag muss <version>:<base64> sein");
+                int version = Integer.parseInt(entry.substring(0, sep).trim());
+                if (version <= 0) throw new IllegalStateException("Master-Key-Version muss > 0 sein");
+                parsed.put(version, aesKey(entry.substring(sep + 1).trim()));
+            }
+        } else if (legacyB64 != null && !legacyB64.isBlank()) {
+            parsed.put(1, aesKey(legacyB64));
+        }
+        if (parsed.isEmpty()) {
+            throw new IllegalStateException("Kein Master-Key konfiguriert (APP_ENCRYPTION_MASTER_KEYS oder APP_ENCRYPTION_KEY).");
+        }
+        this.active = activeVersion > 0 ? activeVersion : parsed.lastKey();
+        if (!parsed.containsKey(active)) {
+            throw new IllegalStateException("Aktiver Master-Key v" + active + " ist nicht konfiguriert");
+        }
+        this.keys = Collections.unmodifiableMap(parsed);
+    }
+
+    public int activeVersion() {
+        return active;
+    }
+
+    public SecretKey active() {
+        return keys.get(active);
+    }
+
+    public SecretKey get(int version) {
+        SecretKey k = keys.get(version);
+        if (k == null) throw new IllegalStateException("Master-Key v" + version + " ist nicht konfiguriert");
+        return k;
+    }
+
+    private static SecretKey aesKey(String b64) {
+        byte[] raw = Base64.getDecoder().decode(b64);
+        if (raw.length != 32) {
+            throw new IllegalStateException("Master-Key muss 32 Bytes (AES-256) haben.");
+        }
+        return new SecretKeySpec(raw, "AES");
+    }
+}
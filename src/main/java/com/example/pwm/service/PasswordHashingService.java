@@ -0,0 +1,101 @@
+package com.example.pwm.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Führt BCrypt encode/matches auf einem eigenen, begrenzten Pool aus.
+ * Ist der Pool samt Warteschlange voll, wird sofort mit {@link HashingSaturatedException}
+ * abgelehnt, statt weitere Tomcat-Worker zu blockieren.
+ */
+@Service
+public class PasswordHashingService {
+
+    private final PasswordEncoder encoder;
+    private final ThreadPoolExecutor pool;
+    private final long retryAfterSeconds;
+
+    private final Timer encodeTimer;
+    private final Timer matchTimer;
+    private final Counter rejected;
+
+    public PasswordHashingService(PasswordEncoder encoder,
+                                  MeterRegistry registry,
+                                  @Value("${app.hashing.threads:0}") int threads,
+                                  @Value("${app.hashing.queue-capacity:32}") int queueCapacity,
+                                  @Value("${app.hashing.retry-after-seconds:2}") long retryAfterSeconds) {
+        this.encoder = encoder;
+        this.retryAfterSeconds = retryAfterSeconds;
+
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger seq = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(
+                size, size,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                r -> {
+                    Thread t = new Thread(r, "pwd-hash-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.encodeTimer = Timer.builder("pwm.password.hash").tag("op", "encode").register(registry);
+        this.matchTimer = Timer.builder("pwm.password.hash").tag("op", "matches").register(registry);
+        this.rejected = Counter.builder("pwm.password.hash.rejected").register(registry);
+        Gauge.builder("pwm.password.hash.queue", pool, p -> p.getQueue().size()).register(registry);
+        Gauge.builder("pwm.password.hash.active", pool, ThreadPoolExecutor::getActiveCount).register(registry);
+    }
+
+    public String encode(CharSequence raw) {
+        return run(() -> encodeTimer.record(() -> encoder.encode(raw)));
+    }
+
+    public boolean matches(CharSequence raw, String encoded) {
+        return run(() -> matchTimer.record(() -> encoder.matches(raw, encoded)));
+    }
+
+    public int queueDepth() {
+        return pool.getQueue().size();
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> f;
+        try {
+            f = pool.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new HashingSaturatedException(retryAfterSeconds);
+        }
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            f.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Passwort-Hashing unterbrochen", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException("Passwort-Hashing fehlgeschlagen", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+}
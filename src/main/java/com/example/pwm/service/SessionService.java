@@ -0,0 +1,162 @@
+package com.example.pwm.service;
+
+import com.example.pwm.entity.RefreshToken;
+import com.example.pwm.repo.RefreshTokenRepository;
+import com.example.pwm.repo.RevokedSessionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Sessions aus kurzlebigem Access-Token (JWT mit {@code sid}) und rotierendem Refresh-Token
+ * ({@code <id>.<secret>}, opak). Jeder Refresh verbraucht das Token und stellt ein neues derselben
+ * Familie aus; wird ein verbrauchtes Token erneut vorgelegt, gilt die Session als kompromittiert
+ * und wird komplett widerrufen.
+ */
+@Service
+public class SessionService {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionService.class);
+
+    /** Toleranz für Uhren-Abweichung beim Ablauf widerrufener Access-Tokens. */
+    private static final Duration CLOCK_SKEW = Duration.ofMinutes(1);
+
+    public record Tokens(String accessToken, String refreshToken, long expiresInSeconds) {}
+
+    private final RefreshTokenRepository tokens;
+    private final RevokedSessionRepository revokedSessions;
+    private final TokenRevocationList revocations;
+    private final JwtService jwt;
+    private final AuthMetrics metrics;
+    private final Duration accessTtl;
+    private final Duration refreshTtl;
+    private final int sweepBatchSize;
+    private final SecureRandom rnd = new SecureRandom();
+
+    public SessionService(RefreshTokenRepository tokens,
+                          RevokedSessionRepository revokedSessions,
+                          TokenRevocationList revocations,
+                          JwtService jwt,
+                          AuthMetrics metrics,
+                          @Value("${app.jwt.access-ttl:PT15M}") Duration accessTtl,
+                          @Value("${app.jwt.refresh-ttl:P14D}") Duration refreshTtl,
+                          @Value("${app.jwt.sweep-batch-size:1000}") int sweepBatchSize) {
+        this.tokens = tokens;
+        this.revokedSessions = revokedSessions;
+        this.revocations = revocations;
+        this.jwt = jwt;
+        this.metrics = metrics;
+        this.accessTtl = accessTtl;
+        this.refreshTtl = refreshTtl;
+        this.sweepBatchSize = sweepBatchSize;
+    }
+
+    /** Neue Session nach erfolgreichem Login. */
+    @Transactional
+    public Tokens start(UUID userId) {
+        return issue(userId, UUID.randomUUID());
+    }
+
+    /** Rotiert das Refresh-Token; leer, wenn es ungültig, abgelaufen oder bereits verbraucht ist. */
+    @Transactional
+    public Optional<Tokens> refresh(String refreshToken) {
+        RefreshToken t = find(refreshToken).orElse(null);
+        if (t == null) {
+            metrics.badCredentials(AuthMetrics.REFRESH);
+            return Optional.empty();
+        }
+        Instant now = Instant.now();
+        if (t.getUsedAt() != null || tokens.markUsed(t.getId(), now) == 0) {
+            log.warn("Refresh-Token erneut verwendet, Session {} wird widerrufen", t.getFamilyId());
+            metrics.refreshReuse();
+            revokeFamily(t.getFamilyId());
+            return Optional.empty();
+        }
+        if (!t.getExpiresAt().isAfter(now)) {
+            metrics.badCredentials(AuthMetrics.REFRESH);
+            return Optional.empty();
+        }
+        return Optional.of(issue(t.getUserId(), t.getFamilyId()));
+    }
+
+    /** Logout: widerruft die Session des Refresh-Tokens samt aller noch laufenden Access-Tokens. */
+    @Transactional
+    public void logout(String refreshToken) {
+        find(refreshToken).ifPresent(t -> revokeFamily(t.getFamilyId()));
+    }
+
+    private Tokens issue(UUID userId, UUID familyId) {
+        byte[] secret = new byte[32];
+        rnd.nextBytes(secret);
+        String secretB64 = Base64.getUrlEncoder().withoutPadding().encodeToString(secret);
+
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        RefreshToken t = new RefreshToken();
+        t.setId(UUID.randomUUID());
+        t.setFamilyId(familyId);
+        t.setUserId(userId);
+        t.setTokenHash(sha256Hex(secretB64));
+        t.setCreatedAt(now);
+        t.setExpiresAt(now.plus(refreshTtl));
+        tokens.save(t);
+
+        String access = jwt.issueToken(userId, familyId, accessTtl);
+        return new Tokens(access, t.getId() + "." + secretB64, accessTtl.toSeconds());
+    }
+
+    /** Sucht das Token und prüft das Secret in konstanter Zeit. */
+    private Optional<RefreshToken> find(String refreshToken) {
+        if (refreshToken == null) return Optional.empty();
+        int dot = refreshToken.indexOf('.');
+        if (dot <= 0) return Optional.empty();
+        UUID id;
+        try {
+            id = UUID.fromString(refreshToken.substring(0, dot));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        byte[] presented = sha256Hex(refreshToken.substring(dot + 1)).getBytes(StandardCharsets.US_ASCII);
+        return tokens.findById(id)
+                .filter(t -> MessageDigest.isEqual(presented, t.getTokenHash().getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private void revokeFamily(UUID familyId) {
+        tokens.deleteFamily(familyId);
+        revocations.revoke(familyId, Instant.now().plus(accessTtl).plus(CLOCK_SKEW));
+    }
+
+    @Scheduled(fixedDelayString = "${app.jwt.sweep-interval:PT1H}", initialDelayString = "${app.jwt.sweep-interval:PT1H}")
+    public void sweep() {
+        try {
+            Instant now = Instant.now();
+            while (tokens.deleteExpiredBatch(now, sweepBatchSize) == sweepBatchSize) { /* weiter */ }
+            while (revokedSessions.deleteExpiredBatch(now, sweepBatchSize) == sweepBatchSize) { /* weiter */ }
+        } catch (RuntimeException e) {
+            log.warn("Session-Sweep fehlgeschlagen: {}", e.getMessage());
+        }
+    }
+
+    private static String sha256Hex(String s) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(s.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.pwm.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.UUID;
+
+/** Opaker Keyset-Cursor (version, id) für den Delta-Sync, Base64url-kodiert. */
+public record SyncCursor(long version, UUID id) {
+
+    /** Alles mit Version größer {@code since}. */
+    public static SyncCursor since(long since) {
+        return new SyncCursor(since, new UUID(-1L, -1L)); // größte UUID in der Postgres-Sortierung
+    }
+
+    public String encode() {
+        String raw = version + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** @throws IllegalArgumentException bei ungültigem Cursor */
+    public static SyncCursor decode(String s) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(s), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            return new SyncCursor(Long.parseLong(raw.substring(0, sep)), UUID.fromString(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("ungültiger Cursor", e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.pwm.service;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Einfaches Hashed Timing Wheel mit 1-Sekunden-Ticks. Einträge landen im Slot ihrer
+ * Ablaufsekunde; pro Tick wird nur ein Slot abgearbeitet, Einträge späterer Runden bleiben liegen.
+ */
+final class TimingWheel implements AutoCloseable {
+
+    private record Timeout(long deadlineSecond, Runnable onExpiry) {}
+
+    private final ConcurrentLinkedQueue<Timeout>[] slots;
+    private final ScheduledExecutorService ticker;
+    private long lastTick;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(int slotCount, String threadName) {
+        this.slots = new ConcurrentLinkedQueue[slotCount];
+        for (int i = 0; i < slotCount; i++) slots[i] = new ConcurrentLinkedQueue<>();
+        this.lastTick = Instant.now().getEpochSecond();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, threadName);
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::tick, 1, 1, TimeUnit.SECONDS);
+    }
+
+    void schedule(Instant deadline, Runnable onExpiry) {
+        long sec = deadline.getEpochSecond() + 1;
+        slots[(int) Math.floorMod(sec, (long) slots.length)].add(new Timeout(sec, onExpiry));
+    }
+
+    private void tick() {
+        long now = Instant.now().getEpochSecond();
+        // Verpasste Ticks (GC-Pause o. ä.) nachholen, höchstens eine volle Runde
+        long from = Math.max(lastTick + 1, now - slots.length + 1);
+        for (long s = from; s <= now; s++) {
+            Iterator<Timeout> it = slots[(int) Math.floorMod(s, (long) slots.length)].iterator();
+            while (it.hasNext()) {
+                Timeout t = it.next();
+                if (t.deadlineSecond() <= now) {
+                    it.remove();
+                    try {
+                        t.onExpiry().run();
+                    } catch (RuntimeException ignored) {
+                        // ein fehlerhafter Callback darf das Wheel nicht anhalten
+                    }
+                }
+            }
+        }
+        lastTick = now;
+    }
+
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.pwm.service;
+
+import com.example.pwm.repo.RevokedSessionRepository;
+import com.example.pwm.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Widerrufene Sessions als Bloom-Filter vor der Tabelle {@code revoked_sessions}. Der Normalfall
+ * "nicht widerrufen" kostet pro Request nur ein paar Hash-Proben; nur Filter-Treffer fragen die DB.
+ * Solange der Filter nicht aufgebaut ist, geht jede Prüfung an die DB.
+ * <p>
+ * Widerrufe auf dieser Instanz greifen sofort, die anderer Instanzen nach dem nächsten Neuaufbau
+ * ({@code app.jwt.revocation.refresh}). Länger als die Access-Token-Laufzeit bleibt ohnehin nichts gültig.
+ */
+@Component
+public class TokenRevocationList {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenRevocationList.class);
+
+    private final RevokedSessionRepository revoked;
+    private final long expected;
+    private final double fpp;
+
+    private final Counter filterMiss;
+    private final Counter dbHit;
+    private final Counter falsePositive;
+
+    private volatile BloomFilter filter;
+
+    public TokenRevocationList(RevokedSessionRepository revoked,
+                               MeterRegistry registry,
+                               @Value("${app.jwt.revocation.expected-insertions:100000}") long expected,
+                               @Value("${app.jwt.revocation.fpp:0.001}") double fpp) {
+        this.revoked = revoked;
+        this.expected = expected;
+        this.fpp = fpp;
+        this.filterMiss = check(registry, "filter-miss");
+        this.dbHit = check(registry, "revoked");
+        this.falsePositive = check(registry, "false-positive");
+    }
+
+    private static Counter check(MeterRegistry registry, String result) {
+        return Counter.builder("pwm.jwt.revocation").tag("result", result).register(registry);
+    }
+
+    /** Tokens ohne Session-ID (vor Einführung der Refresh-Tokens ausgestellt) sind nicht widerrufbar. */
+    public boolean isRevoked(UUID sessionId) {
+        if (sessionId == null) return false;
+        BloomFilter f = filter;
+        if (f != null && !f.mightContain(sessionId.toString())) {
+            filterMiss.increment();
+            return false;
+        }
+        boolean hit = revoked.existsByFamilyIdAndExpiresAtAfter(sessionId, Instant.now());
+        (hit ? dbHit : falsePositive).increment();
+        return hit;
+    }
+
+    /** Widerruft die Session, bis {@code until} alle ihre Access-Tokens abgelaufen sind. */
+    public void revoke(UUID sessionId, Instant until) {
+        revoked.revoke(sessionId, Instant.now(), until);
+        BloomFilter f = filter;
+        if (f != null) f.put(sessionId.toString());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${app.jwt.revocation.refresh:PT10S}", initialDelayString = "${app.jwt.revocation.refresh:PT10S}")
+    public void rebuild() {
+        try {
+            Instant started = Instant.now();
+            List<UUID> ids = revoked.findActiveIds(started);
+            BloomFilter next = BloomFilter.create(Math.max(expected, ids.size() * 2L), fpp);
+            ids.forEach(id -> next.put(id.toString()));
+            filter = next;
+            // Widerrufe während des Aufbaus landeten evtl. nur im alten Filter: nachziehen
+            revoked.findActiveIdsRevokedAfter(started.minusSeconds(5), Instant.now())
+                    .forEach(id -> next.put(id.toString()));
+            log.debug("Widerrufsliste aufgebaut: {} Sessions", ids.size());
+        } catch (RuntimeException e) {
+            log.warn("Widerrufsliste konnte nicht aufgebaut werden: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.pwm.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TOTP nach RFC 6238 (SHA1, 6 Ziffern, 30 s). Mac-Instanzen und Puffer werden pro Thread
+ * wiederverwendet; ein einmal akzeptierter (User, Zeitschritt) kann innerhalb des Fensters
+ * nicht erneut verwendet werden.
+ */
+@Service
+public class TotpService {
+
+    public static final int STEP_SECONDS = 30;
+    public static final int WINDOW = 1;
+    private static final int MODULO = 1_000_000;
+    private static final String HMAC = "HmacSHA1";
+
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ234567".toCharArray();
+    private static final byte[] DECODE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DECODE[ALPHABET[i]] = (byte) i;
+            DECODE[Character.toLowerCase(ALPHABET[i])] = (byte) i;
+        }
+    }
+
+    /** Pro Thread: Mac-Engine, Schlüsselpuffer, Counter- und Ergebnis-Puffer. */
+    private static final class Engine {
+        final Mac mac;
+        byte[] key = new byte[64];
+        final byte[] counter = new byte[8];
+        final byte[] out = new byte[20];
+
+        Engine() {
+            try {
+                this.mac = Mac.getInstance(HMAC);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static final ThreadLocal<Engine> ENGINE = ThreadLocal.withInitial(Engine::new);
+
+    private record UsedStep(UUID userId, long step) {}
+
+    private final SecureRandom rnd = new SecureRandom();
+    private final Cache<UsedStep, Boolean> used;
+    private final Timer okTimer;
+    private final Timer failTimer;
+    private final Timer replayTimer;
+
+    public TotpService(MeterRegistry registry,
+                       @Value("${app.totp.replay-cache-size:100000}") long replayCacheSize) {
+        this.okTimer = Timer.builder("pwm.totp.verify").tag("result", "ok").register(registry);
+        this.failTimer = Timer.builder("pwm.totp.verify").tag("result", "bad-code").register(registry);
+        this.replayTimer = Timer.builder("pwm.totp.verify").tag("result", "replay").register(registry);
+        this.used = Caffeine.newBuilder()
+                .maximumSize(replayCacheSize)
+                // Ein Schritt ist max. (2*WINDOW+1) Schritte lang gültig; etwas Puffer obendrauf
+                .expireAfterWrite(Duration.ofSeconds((2L * WINDOW + 2) * STEP_SECONDS))
+                .build();
+    }
+
+    public String newSecretBase32() {
+        byte[] raw = new byte[20];
+        rnd.nextBytes(raw);
+        return base32Encode(raw);
+    }
+
+    /**
+     * Prüft den Code gegen ±{@link #WINDOW} Schritte um jetzt und markiert den getroffenen
+     * Schritt als verbraucht. Ein zweiter Versuch mit demselben Schritt liefert {@code false}.
+     */
+    public boolean verify(UUID userId, String secretBase32, int code) {
+        long t0 = System.nanoTime();
+        long step = matchingStep(secretBase32, code, Instant.now().getEpochSecond());
+        if (step < 0) {
+            failTimer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+            return false;
+        }
+        boolean fresh = used.asMap().putIfAbsent(new UsedStep(userId, step), Boolean.TRUE) == null;
+        (fresh ? okTimer : replayTimer).record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+        return fresh;
+    }
+
+    /** Liefert den passenden Zeitschritt oder -1. Ein Mac-Init, ein Durchlauf über das Fenster. */
+    public long matchingStep(String secretBase32, int code, long epochSeconds) {
+        Engine e = ENGINE.get();
+        int max = maxDecodedLength(secretBase32);
+        if (e.key.length < max) e.key = new byte[max];
+        int keyLen = decodeInto(secretBase32, e.key);
+        try {
+            e.mac.init(new SecretKeySpec(e.key, 0, keyLen, HMAC));
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+        long base = Math.floorDiv(epochSeconds, STEP_SECONDS);
+        for (long step = base - WINDOW; step <= base + WINDOW; step++) {
+            if (hotp(e, step) == code) return step;
+        }
+        return -1;
+    }
+
+    private static int hotp(Engine e, long counter) {
+        byte[] c = e.counter;
+        for (int i = 7; i >= 0; i--) {
+            c[i] = (byte) counter;
+            counter >>>= 8;
+        }
+        e.mac.update(c);
+        try {
+            e.mac.doFinal(e.out, 0);
+        } catch (ShortBufferException ex) {
+            throw new IllegalStateException(ex);
+        }
+        byte[] h = e.out;
+        int off = h[h.length - 1] & 0x0F;
+        int bin = ((h[off] & 0x7F) << 24) | ((h[off + 1] & 0xFF) << 16) |
+                  ((h[off + 2] & 0xFF) << 8) | (h[off + 3] & 0xFF);
+        return bin % MODULO;
+    }
+
+    public static String base32Encode(byte[] data) {
+        if (data == null || data.length == 0) return "";
+        StringBuilder out = new StringBuilder((data.length * 8 + 4) / 5);
+        int buffer = 0, bitsLeft = 0;
+        for (byte b : data) {
+            buffer = (buffer << 8) | (b & 0xFF);
+            bitsLeft += 8;
+            while (bitsLeft >= 5) {
+                out.append(ALPHABET[(buffer >> (bitsLeft - 5)) & 31]);
+                bitsLeft -= 5;
+            }
+        }
+        if (bitsLeft > 0) {
+            out.append(ALPHABET[(buffer << (5 - bitsLeft)) & 31]);
+        }
+        return out.toString();
+    }
+
+    public static byte[] base32Decode(String s) {
+        byte[] out = new byte[maxDecodedLength(s)];
+        int len = decodeInto(s, out);
+        return len == out.length ? out : Arrays.copyOf(out, len);
+    }
+
+    private static int maxDecodedLength(String s) {
+        return s == null ? 0 : (s.length() * 5) / 8 + 1;
+    }
+
+    /** Dekodiert nach {@code out} (mind. {@link #maxDecodedLength} groß); ignoriert Whitespace und '='-Padding. */
+    private static int decodeInto(String s, byte[] out) {
+        if (s == null) return 0;
+        int buffer = 0, bitsLeft = 0, n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch == '=' || Character.isWhitespace(ch)) continue;
+            int v = ch < 128 ? DECODE[ch] : -1;
+            if (v < 0) throw new IllegalArgumentException("Invalid base32 char: " + ch);
+            buffer = (buffer << 5) | v;
+            bitsLeft += 5;
+            if (bitsLeft >= 8) {
+                out[n++] = (byte) ((buffer >> (bitsLeft - 8)) & 0xFF);
+                bitsLeft -= 8;
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.pwm.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/** Opaker Keyset-Cursor (createdAt, id) für die Tresor-Liste, Base64url-kodiert. */
+public record VaultCursor(Instant createdAt, UUID id) {
+
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** @throws IllegalArgumentException bei ungültigem Cursor */
+    public static VaultCursor decode(String s) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(s), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            return new VaultCursor(Instant.parse(raw.substring(0, sep)), UUID.fromString(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("ungültiger Cursor", e);
+        }
+    }
+}
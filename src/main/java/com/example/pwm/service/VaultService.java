@@ -0,0 +1,194 @@
+package com.example.pwm.service;
+
+import com.example.pwm.entity.VaultItem;
+import com.example.pwm.repo.UserAccountRepository;
+import com.example.pwm.repo.VaultItemRepository;
+import com.example.pwm.repo.VaultRow;
+import com.example.pwm.repo.VaultState;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+@Service
+public class VaultService {
+
+    /** Zeilen pro DB-Roundtrip und Entschlüsselungs-Batch. */
+    static final int BATCH = 256;
+
+    private final VaultItemRepository items;
+    private final UserAccountRepository users;
+    private final EnvelopeCrypto crypto;
+    private final TransactionTemplate tx;
+
+    public VaultService(VaultItemRepository items, UserAccountRepository users, EnvelopeCrypto crypto,
+                        PlatformTransactionManager txManager) {
+        this.items = items;
+        this.users = users;
+        this.crypto = crypto;
+        this.tx = new TransactionTemplate(txManager);
+    }
+
+    /** Empfänger eines entschlüsselten Batches; {@code json.get(i)} gehört zu {@code rows.get(i)} (Tombstones: null). */
+    @FunctionalInterface
+    public interface BatchSink {
+        void accept(List<VaultRow> rows, List<String> json) throws IOException;
+    }
+
+    // Schreibpfade verschlüsseln vor der Transaktion: bei einem DEK-Cache-Miss liest/schreibt EnvelopeCrypto den
+    // DEK in einer eigenen Transaktion (REQUIRES_NEW). Innerhalb einer offenen Transaktion bräuchte jeder Request
+    // zwei Connections (Pool-Erschöpfung bei kaltem Cache), und der Versionssprung sperrt die users-Zeile,
+    // die setDekIfAbsent schreiben will.
+
+    public VaultItem create(UUID userId, String json) {
+        String enc = crypto.encrypt(userId, json);
+        return tx.execute(s -> {
+            VaultItem v = new VaultItem();
+            v.setUser(users.getReferenceById(userId));
+            v.setDataEnc(enc);
+            v.setVersion(nextVersion(userId));
+            return items.save(v);
+        });
+    }
+
+    /**
+     * Legt einen Import-Batch in einer eigenen Transaktion an: ein Versionssprung für alle Einträge,
+     * Verschlüsselung am Stück, Inserts über JDBC-Batching (hibernate.jdbc.batch_size).
+     */
+    public int importBatch(UUID userId, List<String> json) {
+        if (json.isEmpty()) return 0;
+        List<String> enc = crypto.encryptAll(userId, json);
+        return tx.execute(s -> {
+            long version = nextVersion(userId);
+            var owner = users.getReferenceById(userId);
+            List<VaultItem> batch = new ArrayList<>(enc.size());
+            for (String e : enc) {
+                VaultItem v = new VaultItem();
+                v.setUser(owner);
+                v.setDataEnc(e);
+                v.setVersion(version);
+                batch.add(v);
+            }
+            items.saveAll(batch);
+            return batch.size();
+        });
+    }
+
+    public boolean update(UUID userId, UUID id, String json) {
+        String enc = crypto.encrypt(userId, json);
+        return tx.execute(s -> {
+            long version = nextVersion(userId);
+            boolean ok = items.updateData(userId, id, enc, now(), version) == 1;
+            // kein Treffer: Versionssprung zurückrollen, damit ETags nicht grundlos wechseln
+            if (!ok) s.setRollbackOnly();
+            return ok;
+        });
+    }
+
+    @Transactional
+    public boolean delete(UUID userId, UUID id) {
+        long version = nextVersion(userId);
+        return rollbackUnless(items.markDeleted(userId, id, now(), version) == 1);
+    }
+
+    public VaultState state(UUID userId) {
+        return users.findVaultStateById(userId).orElse(new VaultState(0, 0));
+    }
+
+    /**
+     * Liefert bis zu {@code limit} Einträge ab {@code after} in Batches an {@code sink}, jeweils in einer
+     * eigenen kurzen Lese-Transaktion. Es liegt nie mehr als ein Batch im Speicher.
+     *
+     * @return Cursor für die nächste Seite oder {@code null}, wenn es keine weiteren Einträge gibt
+     */
+    public VaultCursor readPage(UUID userId, VaultCursor after, int limit, BatchSink sink) throws IOException {
+        return drain(userId, after, limit,
+                (c, n) -> c == null
+                        ? items.firstPage(userId, Limit.of(n))
+                        : items.pageAfter(userId, c.createdAt(), c.id(), Limit.of(n)),
+                r -> new VaultCursor(r.createdAt(), r.id()),
+                sink, true);
+    }
+
+    /** Alle lebenden Einträge in Batches; ohne {@code decrypt} bleibt {@code json} {@code null} (Rohexport). */
+    public void readAll(UUID userId, boolean decrypt, BatchSink sink) throws IOException {
+        drain(userId, null, Integer.MAX_VALUE,
+                (VaultCursor c, Integer n) -> c == null
+                        ? items.firstPage(userId, Limit.of(n))
+                        : items.pageAfter(userId, c.createdAt(), c.id(), Limit.of(n)),
+                r -> new VaultCursor(r.createdAt(), r.id()),
+                sink, decrypt);
+    }
+
+    /**
+     * Änderungen nach {@code after} in Versionsreihenfolge, inklusive Tombstones (außer beim Erst-Sync),
+     * Semantik wie {@link #readPage}.
+     */
+    public SyncCursor readChanges(UUID userId, SyncCursor after, boolean withDeleted, int limit, BatchSink sink)
+            throws IOException {
+        return drain(userId, after, limit,
+                (c, n) -> items.changesAfter(userId, c.version(), c.id(), withDeleted, Limit.of(n)),
+                r -> new SyncCursor(r.version(), r.id()),
+                sink, true);
+    }
+
+    private <C> C drain(UUID owner, C after, int limit, BiFunction<C, Integer, List<VaultRow>> fetch,
+                        Function<VaultRow, C> cursorOf, BatchSink sink, boolean decrypt) throws IOException {
+        int remaining = limit;
+        C cursor = after;
+        while (remaining > 0) {
+            int n = Math.min(BATCH, remaining);
+            // eine Zeile mehr lesen, um zu wissen, ob es weitergeht
+            List<VaultRow> rows = fetch.apply(cursor, n + 1);
+            boolean more = rows.size() > n;
+            if (more) rows = rows.subList(0, n);
+            if (rows.isEmpty()) return null;
+
+            sink.accept(rows, decrypt ? decryptLive(owner, rows) : null);
+
+            cursor = cursorOf.apply(rows.get(rows.size() - 1));
+            remaining -= rows.size();
+            if (!more) return null;
+        }
+        return cursor;
+    }
+
+    /** Entschlüsselt nur lebende Einträge; Tombstones bleiben {@code null}. */
+    private List<String> decryptLive(UUID userId, List<VaultRow> rows) {
+        List<String> enc = new ArrayList<>(rows.size());
+        for (VaultRow r : rows) if (!r.deleted()) enc.add(r.dataEnc());
+        List<String> plain = crypto.decryptAll(userId, enc);
+        if (plain.size() == rows.size()) return plain;
+
+        List<String> out = new ArrayList<>(rows.size());
+        int j = 0;
+        for (VaultRow r : rows) out.add(r.deleted() ? null : plain.get(j++));
+        return out;
+    }
+
+    private long nextVersion(UUID userId) {
+        users.bumpVaultVersion(userId);
+        return state(userId).version();
+    }
+
+    /** Kein Treffer: Versionssprung zurückrollen, damit ETags nicht grundlos wechseln. */
+    private static boolean rollbackUnless(boolean ok) {
+        if (!ok) TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+        return ok;
+    }
+
+    private static Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.MICROS);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.pwm.service;
+
+import com.example.pwm.repo.VaultItemRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Entfernt Tombstones gelöschter Tresor-Einträge nach Ablauf der Frist in begrenzten Batches.
+ * Clients, die länger nicht synchronisiert haben, bekommen danach {@code fullResync}.
+ */
+@Component
+public class VaultTombstoneSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(VaultTombstoneSweeper.class);
+
+    private final VaultItemRepository items;
+    private final Duration retention;
+    private final int batchSize;
+    private final int maxBatches;
+    private final Counter batches;
+
+    public VaultTombstoneSweeper(VaultItemRepository items,
+                                 MeterRegistry registry,
+                                 @Value("${app.vault.tombstones.retention:P90D}") Duration retention,
+                                 @Value("${app.vault.tombstones.batch-size:1000}") int batchSize,
+                                 @Value("${app.vault.tombstones.max-batches:100}") int maxBatches) {
+        this.items = items;
+        this.retention = retention;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.batches = Counter.builder("pwm.vault.tombstones.batches").register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.vault.tombstones.interval:PT1H}", initialDelayString = "${app.vault.tombstones.initial-delay:PT5M}")
+    public void sweep() {
+        try {
+            Instant cutoff = Instant.now().minus(retention);
+            for (int i = 0; i < maxBatches; i++) {
+                // Rückgabe zählt die angepassten User-Zeilen; 0 = nichts mehr zu tun
+                if (items.purgeTombstonesBatch(cutoff, batchSize) == 0) break;
+                batches.increment();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Tombstone-Sweep fehlgeschlagen: {}", e.getMessage());
+        }
+    }
+}
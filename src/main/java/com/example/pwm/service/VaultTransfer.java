@@ -0,0 +1,286 @@
+package com.example.pwm.service;
+
+import com.example.pwm.repo.VaultRow;
+import com.example.pwm.util.Csv;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Streamender Import/Export des Tresors. Import liest JSON/CSV inkrementell und schreibt in Batches
+ * (je Batch eine Transaktion); Export läuft über die Keyset-Batches von {@link VaultService}.
+ * Im Speicher liegt dabei immer höchstens ein Batch.
+ */
+@Service
+public class VaultTransfer {
+
+    public record ImportResult(int imported, int skipped) {}
+
+    /** Abbruch mitten im Import; bereits geschriebene Batches bleiben bestehen. */
+    public static class ImportException extends RuntimeException {
+        private final int imported;
+
+        public ImportException(String message, int imported) {
+            super(message);
+            this.imported = imported;
+        }
+
+        public int getImported() { return imported; }
+    }
+
+    private final VaultService vault;
+    private final ObjectMapper mapper;
+    private final int batchSize;
+    private final int maxItems;
+    private final int maxItemBytes;
+
+    public VaultTransfer(VaultService vault,
+                         ObjectMapper mapper,
+                         @Value("${app.vault.import.batch-size:500}") int batchSize,
+                         @Value("${app.vault.import.max-items:50000}") int maxItems,
+                         @Value("${app.vault.max-item-bytes:65536}") int maxItemBytes) {
+        this.vault = vault;
+        this.mapper = mapper;
+        this.batchSize = batchSize;
+        this.maxItems = maxItems;
+        this.maxItemBytes = maxItemBytes;
+    }
+
+    // ---------- Import ----------
+
+    /**
+     * JSON-Array von Objekten oder ein Export ({@code {"items":[{..., "data":{...}}]}}). Nur im Export-Format
+     * wird {@code data} ausgepackt; verschlüsselte Exporte ({@code dataEnc}) sind an den DEK des Quellkontos
+     * gebunden und werden abgelehnt statt als Klartext-Einträge übernommen.
+     */
+    public ImportResult importJson(UUID userId, InputStream in) {
+        Batcher b = new Batcher(userId);
+        ItemLimitedStream counted = new ItemLimitedStream(in, maxRawItemBytes());
+        try (JsonParser p = mapper.getFactory().createParser(counted)) {
+            JsonToken t = p.nextToken();
+            boolean wrapped = t == JsonToken.START_OBJECT;
+            if (wrapped) {
+                while ((t = p.nextToken()) == JsonToken.FIELD_NAME && !"items".equals(p.currentName())) {
+                    p.nextToken();
+                    p.skipChildren();
+                }
+                if (t != JsonToken.FIELD_NAME) throw b.fail("Feld \"items\" fehlt");
+                t = p.nextToken();
+            }
+            if (t != JsonToken.START_ARRAY) throw b.fail("JSON-Array erwartet");
+            while (p.nextToken() == JsonToken.START_OBJECT) {
+                counted.startItem(p.currentTokenLocation().getByteOffset());
+                JsonNode node = p.readValueAsTree();
+                counted.endItem();
+                if (node.has("dataEnc")) {
+                    throw b.fail("verschlüsselter Export kann nicht importiert werden, bitte mit encrypted=false exportieren");
+                }
+                if (!wrapped) {
+                    b.add(node);
+                    continue;
+                }
+                JsonNode data = node.get("data");
+                if (data == null || !data.isObject()) throw b.fail("Eintrag ohne \"data\"-Objekt");
+                b.add(data);
+            }
+            if (p.currentToken() != JsonToken.END_ARRAY) throw b.fail("nur JSON-Objekte im Array erlaubt");
+        } catch (ItemTooLargeException e) {
+            throw b.fail(e.getMessage());
+        } catch (IOException e) {
+            throw b.fail("ungültiges JSON: " + (e instanceof JsonProcessingException jpe ? jpe.getOriginalMessage() : e.getMessage()));
+        }
+        return b.finish();
+    }
+
+    /** CSV mit Kopfzeile; jede Zeile wird zu einem Objekt Spaltenname → Wert (leere Werte entfallen). */
+    public ImportResult importCsv(UUID userId, InputStream in) {
+        Batcher b = new Batcher(userId);
+        try {
+            Csv.RowReader csv = new Csv.RowReader(new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)),
+                    maxRawItemBytes());
+            List<String> header = csv.next();
+            if (header == null) return b.finish();
+            List<String> row;
+            while ((row = csv.next()) != null) {
+                ObjectNode node = mapper.createObjectNode();
+                for (int i = 0; i < Math.min(header.size(), row.size()); i++) {
+                    String v = row.get(i);
+                    if (v != null && !v.isEmpty()) node.put(header.get(i).trim(), v);
+                }
+                if (!node.isEmpty()) b.add(node);
+            }
+        } catch (IOException e) {
+            throw b.fail("ungültiges CSV: " + e.getMessage());
+        }
+        return b.finish();
+    }
+
+    /**
+     * Obergrenze für einen Eintrag im Rohformat, bevor er im Speicher landet; Spielraum für Einrückung und Escapes.
+     * Größere Einträge brechen den Import ab, kleinere über {@code maxItemBytes} werden übersprungen.
+     */
+    private int maxRawItemBytes() {
+        return (int) Math.min(Integer.MAX_VALUE, 4L * maxItemBytes);
+    }
+
+    private static final class ItemTooLargeException extends IOException {
+        ItemTooLargeException(long limit) {
+            super("Eintrag größer als " + limit + " Bytes");
+        }
+    }
+
+    /**
+     * Zählt gelesene Bytes und bricht ab, sobald der aktuelle Eintrag (ab {@link #startItem}) das Limit überschreitet.
+     * Der Parser liest blockweise voraus, im Speicher liegt also höchstens Limit + ein Puffer.
+     */
+    private static final class ItemLimitedStream extends FilterInputStream {
+        private final long limit;
+        private long consumed;
+        private long itemStart = -1;
+
+        ItemLimitedStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        void startItem(long offset) {
+            itemStart = offset;
+        }
+
+        void endItem() {
+            itemStart = -1;
+        }
+
+        @Override
+        public int read() throws IOException {
+            check();
+            int c = super.read();
+            if (c >= 0) consumed++;
+            return c;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            check();
+            int n = super.read(buf, off, len);
+            if (n > 0) consumed += n;
+            return n;
+        }
+
+        private void check() throws ItemTooLargeException {
+            if (itemStart >= 0 && consumed - itemStart > limit) throw new ItemTooLargeException(limit);
+        }
+    }
+
+    private final class Batcher {
+        private final UUID userId;
+        private final List<String> pending = new ArrayList<>(batchSize);
+        private int imported;
+        private int skipped;
+
+        Batcher(UUID userId) {
+            this.userId = userId;
+        }
+
+        void add(JsonNode item) throws IOException {
+            String json = mapper.writeValueAsString(item);
+            if (json.getBytes(StandardCharsets.UTF_8).length > maxItemBytes) {
+                skipped++;
+                return;
+            }
+            if (imported + pending.size() >= maxItems) {
+                throw fail("höchstens " + maxItems + " Einträge pro Import");
+            }
+            pending.add(json);
+            if (pending.size() >= batchSize) flush();
+        }
+
+        ImportException fail(String message) {
+            return new ImportException(message, imported);
+        }
+
+        ImportResult finish() {
+            flush();
+            return new ImportResult(imported, skipped);
+        }
+
+        private void flush() {
+            imported += vault.importBatch(userId, pending);
+            pending.clear();
+        }
+    }
+
+    // ---------- Export ----------
+
+    /** Format wie {@code GET /api/vault}; {@code decrypt=false} liefert {@code dataEnc} statt {@code data}. */
+    public void exportJson(UUID userId, boolean decrypt, OutputStream out) throws IOException {
+        try (JsonGenerator gen = mapper.getFactory().createGenerator(out)) {
+            gen.writeStartObject();
+            gen.writeArrayFieldStart("items");
+            vault.readAll(userId, decrypt, (rows, json) -> {
+                writeItems(gen, rows, json);
+                gen.flush();
+            });
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+    }
+
+    /** Entschlüsselter CSV-Export mit festen Spalten (id + {@code columns}, Werte aus den Top-Level-Feldern). */
+    public void exportCsv(UUID userId, List<String> columns, OutputStream out) throws IOException {
+        Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        List<String> header = new ArrayList<>(columns.size() + 1);
+        header.add("id");
+        header.addAll(columns);
+        Csv.writeRow(w, header);
+        List<String> fields = new ArrayList<>(header.size());
+        vault.readAll(userId, true, (rows, json) -> {
+            for (int i = 0; i < rows.size(); i++) {
+                JsonNode data = mapper.readTree(json.get(i));
+                fields.clear();
+                fields.add(rows.get(i).id().toString());
+                for (String c : columns) {
+                    JsonNode v = data.get(c);
+                    fields.add(v == null || v.isNull() ? null : v.isValueNode() ? v.asText() : v.toString());
+                }
+                Csv.writeRow(w, fields);
+            }
+            w.flush();
+        });
+        w.flush();
+    }
+
+    /** Einträge im gemeinsamen Listen-/Sync-/Export-Format; {@code json == null}: verschlüsselter Rohinhalt. */
+    public static void writeItems(JsonGenerator gen, List<VaultRow> rows, List<String> json) throws IOException {
+        for (int i = 0; i < rows.size(); i++) {
+            VaultRow r = rows.get(i);
+            gen.writeStartObject();
+            gen.writeStringField("id", r.id().toString());
+            gen.writeNumberField("version", r.version());
+            gen.writeStringField("createdAt", r.createdAt().toString());
+            gen.writeStringField("updatedAt", r.updatedAt().toString());
+            if (r.deleted()) {
+                gen.writeBooleanField("deleted", true);
+            } else if (json == null) {
+                gen.writeStringField("dataEnc", r.dataEnc());
+            } else {
+                // beim Speichern von uns serialisiert, daher ohne erneutes Parsen einbettbar
+                gen.writeFieldName("data");
+                gen.writeRawValue(json.get(i));
+            }
+            gen.writeEndObject();
+        }
+    }
+}
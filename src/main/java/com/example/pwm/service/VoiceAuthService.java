@@ -1,18 +1,17 @@
 package com.example.pwm.service;
 
 import com.example.pwm.entity.UserAccount;
-import com.example.pwm.entity.VoiceChallenge;
-import com.example.pwm.entity.VoiceLinkCode;
 import com.example.pwm.repo.UserAccountRepository;
-import com.example.pwm.repo.VoiceChallengeRepository;
-import com.example.pwm.repo.VoiceLinkCodeRepository;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import com.example.pwm.repo.VoiceChallengeView;
+import com.example.pwm.repo.VoiceLinkCodeView;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.security.SecureRandom;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -22,9 +21,10 @@ public class VoiceAuthService {
 
 
     private final UserAccountRepository users;
-    private final VoiceLinkCodeRepository linkCodes;
-    private final VoiceChallengeRepository challenges;
-    private final PasswordEncoder encoder;
+    private final VoiceChallengeStore store;
+    private final PasswordHashingService hashing;
+    private final VoiceChallengeEvents events;
+    private final AuthMetrics metrics;
     private final SecureRandom rnd = new SecureRandom();
 
     // Policy
@@ -34,13 +34,15 @@ public class VoiceAuthService {
     private static final Duration LOCK_DURATION = Duration.ofMinutes(5);
 
     public VoiceAuthService(UserAccountRepository users,
-                            VoiceLinkCodeRepository linkCodes,
-                            VoiceChallengeRepository challenges,
-                            PasswordEncoder encoder) {
+                            VoiceChallengeStore store,
+                            PasswordHashingService hashing,
+                            VoiceChallengeEvents events,
+                            AuthMetrics metrics) {
         this.users = users;
-        this.linkCodes = linkCodes;
-        this.challenges = challenges;
-        this.encoder = encoder;
+        this.store = store;
+        this.hashing = hashing;
+        this.events = events;
+        this.metrics = metrics;
     }
 
     private String code6() {
@@ -48,37 +50,32 @@ public class VoiceAuthService {
         return String.format("%06d", x);
     }
 
-    @Transactional
     public String createLinkCode(UUID userId) {
-        UserAccount u = users.findById(userId).orElseThrow();
-        linkCodes.deleteByExpiresAtBefore(Instant.now());
-        VoiceLinkCode c = new VoiceLinkCode();
-        c.setUser(u);
-        c.setCode(code6());
-        c.setExpiresAt(Instant.now().plus(LINK_TTL));
-        linkCodes.save(c);
-        return c.getCode();
+        Instant expiresAt = Instant.now().plus(LINK_TTL);
+        for (int i = 0; i < 5; i++) {
+            String code = code6();
+            if (store.saveLinkCode(userId, code, expiresAt)) return code;
+        }
+        throw new IllegalStateException("Kein freier Link-Code gefunden");
     }
 
     @Transactional
     public boolean completeLink(String code, String alexaUserId) {
-        var opt = linkCodes.findByCode(code);
-        if (opt.isEmpty()) return false;
-        var link = opt.get();
-        if (link.getExpiresAt().isBefore(Instant.now())) return false;
-
-        var user = link.getUser();
         if (alexaUserId == null || alexaUserId.isBlank()) return false;
+        Optional<UUID> owner = store.findLinkCodeOwner(code, Instant.now());
+        if (owner.isEmpty()) return false;
 
         var existing = users.findByAlexaUserId(alexaUserId);
-        if (existing.isPresent() && !existing.get().getId().equals(user.getId())) {
+        if (existing.isPresent() && !existing.get().getId().equals(owner.get())) {
             return false; 
         }
+        var user = users.findById(owner.get()).orElse(null);
+        if (user == null) return false;
 
         try {
             user.setAlexaUserId(alexaUserId);
             users.save(user);
-            linkCodes.delete(link);
+            store.deleteLinkCode(code);
             return true;
         } catch (org.springframework.dao.DataIntegrityViolationException ex) {
             return false;
@@ -86,19 +83,13 @@ public class VoiceAuthService {
     }
 
 
-    @Transactional
-    public String createChallenge(UUID userId) {
-        UserAccount u = users.findById(userId).orElseThrow();
-        challenges.deleteByExpiresAtBefore(Instant.now());
-        VoiceChallenge ch = new VoiceChallenge();
-        ch.setUser(u);
-        ch.setCode(code6());
-        ch.setCreatedAt(Instant.now());
-        ch.setExpiresAt(Instant.now().plus(CHALLENGE_TTL));
-        ch.setVerified(false);
-        ch.setAttempts(0);
-        challenges.save(ch);
-        return ch.getCode();
+    /** Leer, wenn der User (trotz noch gültigem Token) nicht mehr existiert. */
+    public Optional<String> createChallenge(UUID userId) {
+        if (!users.existsById(userId)) return Optional.empty();
+        Instant now = Instant.now();
+        String code = code6();
+        store.saveChallenge(userId, code, now, now.plus(CHALLENGE_TTL));
+        return Optional.of(code);
     }
 
     @Transactional
@@ -107,16 +98,16 @@ public class VoiceAuthService {
         String normCode = code == null ? "" : code.replaceAll("\\D+", ""); // nur Ziffern
         String normPin  = pin  == null ? "" : pin.replaceAll("\\D+", "");  // nur Ziffern
 
-        // User anhand alexaUserId
-        UserAccount user = users.findAll().stream()
-                .filter(u -> alexaUserId != null && alexaUserId.equals(u.getAlexaUserId()))
-                .findFirst().orElse(null);
+        // User anhand alexaUserId (Index-Lookup statt Full-Scan)
+        if (alexaUserId == null || alexaUserId.isBlank()) return Map.of("success", false, "message", "no-link");
+        UserAccount user = users.findByAlexaUserId(alexaUserId).orElse(null);
         if (user == null) return Map.of("success", false, "message", "no-link");
 
         Instant now = Instant.now();
 
         // Lock prüfen
         if (user.getVoiceLockUntil() != null && user.getVoiceLockUntil().isAfter(now)) {
+            metrics.locked(AuthMetrics.VOICE);
             return Map.of("success", false, "message", "locked");
         }
 
@@ -124,53 +115,59 @@ public class VoiceAuthService {
         if (user.getVoicePinHash() == null || user.getVoicePinHash().isBlank()) {
             return Map.of("success", false, "message", "no-pin");
         }
-        boolean pinOk = encoder.matches(normPin, user.getVoicePinHash());
+        boolean pinOk = hashing.matches(normPin, user.getVoicePinHash());
         if (!pinOk) {
             int fails = user.getVoiceFailedAttempts() + 1;
             user.setVoiceFailedAttempts(fails);
             if (fails >= MAX_ATTEMPTS) {
                 user.setVoiceLockUntil(now.plus(LOCK_DURATION));
                 user.setVoiceFailedAttempts(0);
+                metrics.lockout(AuthMetrics.VOICE);
             }
             users.save(user);
+            metrics.badPin();
             return Map.of("success", false, "message", "bad-pin");
         }
 
-        // Challenge suchen (unverifiziert + nicht abgelaufen) – mit normalisiertem Code
-        Optional<VoiceChallenge> optCh =
-                challenges.findFirstByUserAndCodeAndVerifiedFalseAndExpiresAtAfter(user, normCode, now);
-        if (optCh.isEmpty()) {
+        // Challenge (unverifiziert + nicht abgelaufen) mit normalisiertem Code verifizieren
+        if (!store.markVerified(user.getId(), normCode, deviceId, now)) {
+            metrics.badCode(AuthMetrics.VOICE);
             return Map.of("success", false, "message", "bad-code");
         }
+        events.publishVerified(user.getId());
 
-        // Verifizieren
-        VoiceChallenge ch = optCh.get();
-        ch.setVerified(true);
-        ch.setVerifiedAt(now);
-        ch.setDeviceId(deviceId);
-        challenges.save(ch);
-
-        // Fehlversuche resetten
-        user.setVoiceFailedAttempts(0);
-        users.save(user);
+        // Fehlversuche resetten (nur schreiben, wenn es etwas zurückzusetzen gibt)
+        if (user.getVoiceFailedAttempts() != 0) {
+            user.setVoiceFailedAttempts(0);
+            users.save(user);
+        }
 
         return Map.of("success", true, "message", "ok");
     }
 
 
-    @Transactional(readOnly = true)
     public boolean hasVerifiedChallenge(UUID userId) {
-        UserAccount u = users.findById(userId).orElseThrow();
-        return challenges.findFirstByUserAndVerifiedTrueAndExpiresAtAfter(u, Instant.now()).isPresent();
+        return store.hasVerified(userId, Instant.now());
     }
-    @Transactional
+
+    /**
+     * Verbraucht eine verifizierte Challenge und räumt alle übrigen Challenges des Users ab;
+     * bei parallelen Aufrufen gewinnt genau einer.
+     */
+    public boolean consumeVerifiedChallenge(UUID userId) {
+        return store.consumeVerified(userId, Instant.now());
+    }
+
     public void deleteAllChallengesOfUser(UUID userId) {
-        UserAccount u = users.findById(userId).orElseThrow();
-        // Minimal-invasiv ohne neue Repo-Methoden:
-        challenges.findAll()
-                .stream()
-                .filter(ch -> ch.getUser().getId().equals(u.getId()))
-                .forEach(challenges::delete);
+        store.deleteAllChallenges(userId);
+    }
+
+    public Map<UUID, List<VoiceChallengeView>> pendingChallenges(Collection<UUID> userIds) {
+        return store.findChallenges(userIds, Instant.now());
+    }
+
+    public Map<UUID, List<VoiceLinkCodeView>> activeLinkCodes(Collection<UUID> userIds) {
+        return store.findLinkCodes(userIds, Instant.now());
     }
 
 }
@@ -0,0 +1,110 @@
+package com.example.pwm.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-Process-Hub für "Challenge verifiziert"-Events. Wartende SPAs halten nur eine geparkte
+ * SSE-Verbindung statt {@code /api/voice/finalize} zu pollen. Anzahl und Lebensdauer der
+ * Subscriber sind begrenzt.
+ */
+@Component
+public class VoiceChallengeEvents {
+
+    private final ConcurrentHashMap<UUID, List<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger total = new AtomicInteger();
+
+    private final int maxSubscribers;
+    private final int maxPerUser;
+    private final long timeoutMillis;
+
+    public VoiceChallengeEvents(@Value("${app.voice.events.max-subscribers:10000}") int maxSubscribers,
+                                @Value("${app.voice.events.max-per-user:3}") int maxPerUser,
+                                @Value("${app.voice.events.timeout:PT3M}") Duration timeout) {
+        this.maxSubscribers = maxSubscribers;
+        this.maxPerUser = maxPerUser;
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    /** Neuer Subscriber oder {@code null}, wenn die Limits erreicht sind. */
+    public SseEmitter subscribe(UUID userId) {
+        if (total.incrementAndGet() > maxSubscribers) {
+            total.decrementAndGet();
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        boolean[] added = {false};
+        subscribers.compute(userId, (k, list) -> {
+            if (list == null) list = new CopyOnWriteArrayList<>();
+            if (list.size() < maxPerUser) {
+                list.add(emitter);
+                added[0] = true;
+            }
+            return list;
+        });
+        if (!added[0]) {
+            total.decrementAndGet();
+            return null;
+        }
+        Runnable remove = () -> unsubscribe(userId, emitter);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(() -> {
+            remove.run();
+            emitter.complete();
+        });
+        emitter.onError(e -> remove.run());
+        return emitter;
+    }
+
+    /** Meldet die Verifikation; innerhalb einer Transaktion erst nach deren Commit. */
+    public void publishVerified(UUID userId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(userId);
+                }
+            });
+        } else {
+            send(userId);
+        }
+    }
+
+    public int subscriberCount() {
+        return total.get();
+    }
+
+    private void send(UUID userId) {
+        List<SseEmitter> list = subscribers.remove(userId);
+        if (list == null) return;
+        for (SseEmitter emitter : list) {
+            total.decrementAndGet();
+            try {
+                emitter.send(SseEmitter.event().name("verified").data(Map.of("verified", true), MediaType.APPLICATION_JSON));
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                emitter.completeWithError(e);
+            }
+        }
+    }
+
+    private void unsubscribe(UUID userId, SseEmitter emitter) {
+        subscribers.computeIfPresent(userId, (k, list) -> {
+            if (list.remove(emitter)) total.decrementAndGet();
+            return list.isEmpty() ? null : list;
+        });
+    }
+}
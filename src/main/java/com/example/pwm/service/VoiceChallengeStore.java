@@ -0,0 +1,49 @@
+package com.example.pwm.service;
+
+import com.example.pwm.repo.VoiceChallengeView;
+import com.example.pwm.repo.VoiceLinkCodeView;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Ablage für die kurzlebigen Voice-Daten (Link-Codes, Challenges).
+ * Auswahl über {@code app.voice.store}: {@code memory} (Standard, nur Single-Node) oder {@code jpa}.
+ */
+public interface VoiceChallengeStore {
+
+    /** Nach so vielen falschen Codes ist eine offene Challenge verbrannt. */
+    int MAX_CODE_ATTEMPTS = 5;
+
+    /** Legt einen Link-Code an; {@code false}, wenn der Code gerade anderweitig vergeben ist. */
+    boolean saveLinkCode(UUID userId, String code, Instant expiresAt);
+
+    Optional<UUID> findLinkCodeOwner(String code, Instant now);
+
+    void deleteLinkCode(String code);
+
+    void saveChallenge(UUID userId, String code, Instant createdAt, Instant expiresAt);
+
+    /**
+     * Markiert die passende offene Challenge als verifiziert. Passt keine, zählt das als
+     * Fehlversuch für alle offenen Challenges des Users.
+     */
+    boolean markVerified(UUID userId, String code, String deviceId, Instant now);
+
+    boolean hasVerified(UUID userId, Instant now);
+
+    /** Verbraucht eine verifizierte Challenge und entfernt alle Challenges des Users; genau ein Aufrufer gewinnt. */
+    boolean consumeVerified(UUID userId, Instant now);
+
+    void deleteAllChallenges(UUID userId);
+
+    /** Noch gültige Challenges für mehrere User in einem Zug (GraphQL-Batching); User ohne Einträge fehlen in der Map. */
+    Map<UUID, List<VoiceChallengeView>> findChallenges(Collection<UUID> userIds, Instant now);
+
+    /** Noch gültige Link-Codes für mehrere User in einem Zug; User ohne Einträge fehlen in der Map. */
+    Map<UUID, List<VoiceLinkCodeView>> findLinkCodes(Collection<UUID> userIds, Instant now);
+}
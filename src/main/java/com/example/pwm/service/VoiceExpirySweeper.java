@@ -0,0 +1,193 @@
+package com.example.pwm.service;
+
+import com.example.pwm.repo.VoiceChallengeRepository;
+import com.example.pwm.repo.VoiceLinkCodeRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * Räumt abgelaufene Voice-Challenges und Link-Codes im Hintergrund ab, statt das im
+ * Request-Pfad zu tun. Nur aktiv mit {@code app.voice.store=jpa}.
+ * <p>
+ * Standard: Löschen in begrenzten Batches (je Batch eine eigene kurze Transaktion).
+ * Mit {@code app.voice.partitioning.enabled=true} (Layout aus
+ * {@code db/partitioning/voice_tables_partitioned.sql}) werden stattdessen Tagespartitionen
+ * vorab angelegt und abgelaufene Partitionen komplett gedroppt.
+ */
+@Component
+@ConditionalOnProperty(name = "app.voice.store", havingValue = "jpa")
+public class VoiceExpirySweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(VoiceExpirySweeper.class);
+    private static final List<String> TABLES = List.of("voice_challenges", "voice_link_codes");
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final VoiceChallengeRepository challenges;
+    private final VoiceLinkCodeRepository linkCodes;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+
+    private final int batchSize;
+    private final int maxBatches;
+    private final boolean partitioned;
+    private final int partitionsAhead;
+    private final Duration partitionGrace;
+
+    private final Timer runTimer;
+    private final Counter challengesDeleted;
+    private final Counter linkCodesDeleted;
+    private final Counter partitionsDropped;
+
+    public VoiceExpirySweeper(VoiceChallengeRepository challenges,
+                              VoiceLinkCodeRepository linkCodes,
+                              JdbcTemplate jdbc,
+                              PlatformTransactionManager txManager,
+                              MeterRegistry registry,
+                              @Value("${app.voice.sweep.batch-size:500}") int batchSize,
+                              @Value("${app.voice.sweep.max-batches:100}") int maxBatches,
+                              @Value("${app.voice.partitioning.enabled:false}") boolean partitioned,
+                              @Value("${app.voice.partitioning.days-ahead:2}") int partitionsAhead,
+                              @Value("${app.voice.partitioning.grace:PT1H}") Duration partitionGrace) {
+        this.challenges = challenges;
+        this.linkCodes = linkCodes;
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(txManager);
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.partitioned = partitioned;
+        this.partitionsAhead = partitionsAhead;
+        this.partitionGrace = partitionGrace;
+
+        this.runTimer = Timer.builder("pwm.voice.sweep").register(registry);
+        this.challengesDeleted = Counter.builder("pwm.voice.sweep.deleted").tag("table", "voice_challenges").register(registry);
+        this.linkCodesDeleted = Counter.builder("pwm.voice.sweep.deleted").tag("table", "voice_link_codes").register(registry);
+        this.partitionsDropped = Counter.builder("pwm.voice.sweep.partitions.dropped").register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.voice.sweep.interval:PT1M}", initialDelayString = "${app.voice.sweep.initial-delay:PT30S}")
+    public void sweep() {
+        runTimer.record(() -> {
+            try {
+                if (partitioned) {
+                    maintainPartitions(Instant.now());
+                } else {
+                    Instant now = Instant.now();
+                    challengesDeleted.increment(drain(() -> challenges.deleteExpiredBatch(now, batchSize)));
+                    linkCodesDeleted.increment(drain(() -> linkCodes.deleteExpiredBatch(now, batchSize)));
+                }
+            } catch (RuntimeException e) {
+                log.warn("Voice-Expiry-Sweep fehlgeschlagen: {}", e.getMessage());
+            }
+        });
+    }
+
+    private int drain(IntSupplier batch) {
+        int total = 0;
+        for (int i = 0; i < maxBatches; i++) {
+            int n = batch.getAsInt();
+            total += n;
+            if (n < batchSize) break;
+        }
+        return total;
+    }
+
+    /** Jeder Schritt einzeln abgesichert: eine Partition, die nicht angelegt oder gedroppt werden kann, hält den Rest nicht auf. */
+    private void maintainPartitions(Instant now) {
+        LocalDate today = LocalDate.ofInstant(now, ZoneOffset.UTC);
+        Instant cutoff = now.minus(partitionGrace);
+        for (String table : TABLES) {
+            // DEFAULT-Partition (Auffangbecken, falls Tagespartitionen fehlten) zeilenweise leeren; Zeilen dort
+            // würden sonst nie gedroppt
+            try {
+                int stale = jdbc.update("delete from " + table + "_default where expires_at < ?", Timestamp.from(cutoff));
+                (table.equals("voice_challenges") ? challengesDeleted : linkCodesDeleted).increment(stale);
+            } catch (RuntimeException e) {
+                log.warn("Aufräumen von {}_default fehlgeschlagen", table, e);
+            }
+
+            for (int d = 0; d <= partitionsAhead; d++) {
+                LocalDate day = today.plusDays(d);
+                try {
+                    createDayPartition(table, day);
+                } catch (RuntimeException e) {
+                    log.warn("Partition {}_p{} konnte nicht angelegt werden", table, SUFFIX.format(day), e);
+                }
+            }
+
+            List<String> children = jdbc.queryForList("""
+                    select c.relname from pg_inherits i
+                    join pg_class c on c.oid = i.inhrelid
+                    join pg_class p on p.oid = i.inhparent
+                    where p.relname = ?
+                    """, String.class, table);
+            for (String child : children) {
+                LocalDate day = partitionDay(table, child);
+                if (day != null && day.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().isBefore(cutoff)) {
+                    try {
+                        jdbc.execute("drop table if exists " + child);
+                        partitionsDropped.increment();
+                        log.info("Partition {} gedroppt", child);
+                    } catch (RuntimeException e) {
+                        log.warn("Partition {} konnte nicht gedroppt werden", child, e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Legt die Tagespartition an. Liegen für den Tag schon Zeilen in der DEFAULT-Partition (Sweeper lief nicht
+     * rechtzeitig), scheitert {@code partition of} daran; sie werden deshalb in derselben Transaktion herausgenommen
+     * und nach dem Anlegen neu eingefügt. Der Lock auf die Eltern-Tabelle hält Inserts so lange an (wenige ms).
+     */
+    private void createDayPartition(String table, LocalDate day) {
+        String partition = table + "_p" + SUFFIX.format(day);
+        if (Boolean.TRUE.equals(jdbc.queryForObject("select to_regclass(?) is not null", Boolean.class, partition))) {
+            return;
+        }
+        // Grenzen explizit in UTC, unabhängig von der Session-Zeitzone (wie im Setup-Skript)
+        String from = day + " 00:00:00+00";
+        String to = day.plusDays(1) + " 00:00:00+00";
+        Integer moved = tx.execute(s -> {
+            jdbc.execute("lock table " + table + " in access exclusive mode");
+            jdbc.execute("create temp table voice_partition_move (like " + table + ") on commit drop");
+            jdbc.update("with m as (delete from " + table + "_default where expires_at >= ?::timestamptz and expires_at < ?::timestamptz"
+                    + " returning *) insert into voice_partition_move select * from m", from, to);
+            jdbc.execute("create table " + partition + " partition of " + table
+                    + " for values from ('" + from + "') to ('" + to + "')");
+            return jdbc.update("insert into " + table + " select * from voice_partition_move");
+        });
+        if (moved != null && moved > 0) {
+            log.info("Partition {} angelegt, {} Zeilen aus {}_default übernommen", partition, moved, table);
+        }
+    }
+
+    private static LocalDate partitionDay(String table, String child) {
+        String prefix = table + "_p";
+        if (!child.startsWith(prefix)) return null;
+        try {
+            return LocalDate.parse(child.substring(prefix.length()), SUFFIX);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
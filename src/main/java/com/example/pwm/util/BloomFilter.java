@@ -0,0 +1,78 @@
+package com.example.pwm.util;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-sicherer Bloom-Filter über Strings (lock-frei, feste Größe).
+ * {@code mightContain == false} heißt sicher "nie hinzugefügt"; {@code true} kann falsch-positiv sein.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final long seed = new SecureRandom().nextLong();
+
+    private BloomFilter(long bitCount, int hashCount) {
+        long wordCount = Math.max(1, (bitCount + 63) >>> 6);
+        if (wordCount > Integer.MAX_VALUE) throw new IllegalArgumentException("Bloom-Filter zu groß");
+        this.words = new AtomicLongArray((int) wordCount);
+        this.bitCount = wordCount << 6;
+        this.hashCount = hashCount;
+    }
+
+    /** Dimensioniert für {@code expectedInsertions} Einträge bei Falsch-Positiv-Rate {@code fpp}. */
+    public static BloomFilter create(long expectedInsertions, double fpp) {
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        int k = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+        return new BloomFilter(m, k);
+    }
+
+    public void put(String key) {
+        long h1 = hash(key, seed);
+        long h2 = mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int w = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long cur;
+            while (((cur = words.get(w)) & mask) == 0 && !words.compareAndSet(w, cur, cur | mask)) {
+                // retry
+            }
+        }
+    }
+
+    public boolean mightContain(String key) {
+        long h1 = hash(key, seed);
+        long h2 = mix(h1 ^ 0x9e3779b97f4a7c15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    public long bitSize() {
+        return bitCount;
+    }
+
+    private static long hash(String key, long seed) {
+        long h = 0xcbf29ce484222325L ^ seed;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.pwm.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Minimaler RFC-4180-CSV-Leser/-Schreiber (Komma, Anführungszeichen, Zeilenumbrüche in Feldern), streamend. */
+public final class Csv {
+
+    private Csv() {}
+
+    public static final class RowReader {
+        private final Reader in;
+        private final int maxRowChars;
+        private int peeked = -2;
+        private boolean first = true;
+
+        public RowReader(Reader in) {
+            this(in, Integer.MAX_VALUE);
+        }
+
+        /** Bricht mit {@link IOException} ab, sobald eine Zeile (samt Trennern) länger als {@code maxRowChars} wird. */
+        public RowReader(Reader in, int maxRowChars) {
+            this.in = in;
+            this.maxRowChars = maxRowChars;
+        }
+
+        /** Nächste Zeile als Felder, {@code null} am Ende. Leerzeilen werden übersprungen. */
+        public List<String> next() throws IOException {
+            while (true) {
+                int c = read();
+                if (c == -1) return null;
+                if (first) {
+                    first = false;
+                    if (c == '\uFEFF') c = read(); // BOM aus Excel-Exporten
+                    if (c == -1) return null;
+                }
+                if (c == '\n') continue;
+                if (c == '\r') { if (peek() == '\n') read(); continue; }
+                unread(c);
+                return row();
+            }
+        }
+
+        private List<String> row() throws IOException {
+            List<String> fields = new ArrayList<>();
+            StringBuilder sb = new StringBuilder();
+            boolean quoted = false;
+            int length = 0;
+            while (true) {
+                int c = read();
+                // sonst füllt eine Riesenzeile oder ein nicht geschlossenes Anführungszeichen den Heap
+                if (++length > maxRowChars) throw new IOException("CSV: Zeile länger als " + maxRowChars + " Zeichen");
+                if (quoted) {
+                    if (c == -1) throw new IOException("CSV: nicht geschlossenes Anführungszeichen");
+                    if (c == '"') {
+                        if (peek() == '"') { read(); sb.append('"'); }
+                        else quoted = false;
+                    } else {
+                        sb.append((char) c);
+                    }
+                } else if (c == '"' && sb.isEmpty()) {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(sb.toString());
+                    sb.setLength(0);
+                } else if (c == '\n' || c == '\r' || c == -1) {
+                    if (c == '\r' && peek() == '\n') read();
+                    fields.add(sb.toString());
+                    return fields;
+                } else {
+                    sb.append((char) c);
+                }
+            }
+        }
+
+        private int read() throws IOException {
+            if (peeked != -2) { int c = peeked; peeked = -2; return c; }
+            return in.read();
+        }
+
+        private int peek() throws IOException {
+            if (peeked == -2) peeked = in.read();
+            return peeked;
+        }
+
+        private void unread(int c) {
+            peeked = c;
+        }
+    }
+
+    /** Schreibt eine Zeile; Felder mit Komma, Anführungszeichen oder Zeilenumbruch werden gequotet. */
+    public static void writeRow(Writer out, List<String> fields) throws IOException {
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) out.write(',');
+            String f = fields.get(i);
+            if (f == null) continue;
+            if (f.indexOf(',') >= 0 || f.indexOf('"') >= 0 || f.indexOf('\n') >= 0 || f.indexOf('\r') >= 0) {
+                out.write('"');
+                out.write(f.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(f);
+            }
+        }
+        out.write("\r\n");
+    }
+}
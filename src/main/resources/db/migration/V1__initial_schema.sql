@@ -0,0 +1,43 @@
+-- Ausgangsschema, wie es bisher von Hibernate (ddl-auto=update) angelegt wurde.
+-- "if not exists", damit bestehende Datenbanken ohne Flyway-Historie sauber übernommen werden.
+
+create table if not exists users (
+    id                    uuid                        not null,
+    email                 varchar(320)                not null,
+    password_hash         varchar(255) default ''     not null,
+    totp_secret_enc       varchar(512) default ''     not null,
+    totp_verified         boolean                     not null,
+    created_at            timestamp(6) with time zone not null,
+    alexa_user_id         varchar(512),
+    voice_pin_hash        varchar(120),
+    voice_lock_until      timestamp(6) with time zone,
+    voice_failed_attempts integer                     not null,
+    constraint users_pkey primary key (id)
+);
+
+create unique index if not exists ux_users_email on users (email);
+
+create table if not exists voice_challenges (
+    id          uuid                        not null,
+    user_id     uuid                        not null references users (id),
+    code        varchar(6)                  not null,
+    expires_at  timestamp(6) with time zone not null,
+    created_at  timestamp(6) with time zone not null,
+    verified_at timestamp(6) with time zone,
+    verified    boolean                     not null,
+    device_id   varchar(512),
+    attempts    integer                     not null,
+    constraint voice_challenges_pkey primary key (id)
+);
+
+create index if not exists ix_voice_challenge_user_code on voice_challenges (user_id, code);
+
+create table if not exists voice_link_codes (
+    id         uuid                        not null,
+    user_id    uuid                        not null references users (id),
+    code       varchar(6)                  not null,
+    expires_at timestamp(6) with time zone not null,
+    constraint voice_link_codes_pkey primary key (id)
+);
+
+create unique index if not exists ix_voice_link_code_code on voice_link_codes (code);
@@ -0,0 +1,13 @@
+-- Nicht verknüpfte Accounts hatten alexa_user_id = '' (prePersist). Ab jetzt NULL, damit ein
+-- normaler Unique-Index greift und findByAlexaUserId(?) ihn auch mit generischem Plan nutzt.
+update users set alexa_user_id = null where alexa_user_id = '';
+
+drop index if exists ix_users_alexa_user_id;
+create unique index if not exists ux_users_alexa_user_id on users (alexa_user_id);
+
+-- Finder/exists/delete im VoiceChallengeRepository filtern auf (user_id, verified, expires_at)
+create index if not exists ix_voice_challenge_user_verified_exp on voice_challenges (user_id, verified, expires_at);
+
+-- Für den VoiceExpirySweeper (expires_at < now)
+create index if not exists ix_voice_challenge_expires_at on voice_challenges (expires_at);
+create index if not exists ix_voice_link_code_expires_at on voice_link_codes (expires_at);
@@ -0,0 +1,10 @@
+-- Normalisierter E-Mail-Schlüssel: existsByEmailIgnoreCase (lower(email) = lower(?)) konnte
+-- ux_users_email nicht nutzen, findByEmail war case-sensitiv. Schlägt der Unique-Index fehl,
+-- gibt es Accounts, die sich nur in Groß-/Kleinschreibung unterscheiden – vorher bereinigen.
+alter table users add column if not exists email_key varchar(320);
+
+update users set email_key = lower(trim(email)) where email_key is null;
+
+alter table users alter column email_key set not null;
+
+create unique index if not exists ux_users_email_key on users (email_key);
@@ -0,0 +1,12 @@
+-- Tresor-Einträge: Inhalt nur verschlüsselt (AES-GCM über CryptoService), für den Server opak.
+create table vault_items (
+    id         uuid                        not null,
+    user_id    uuid                        not null references users (id) on delete cascade,
+    data_enc   text                        not null,
+    created_at timestamp(6) with time zone not null,
+    updated_at timestamp(6) with time zone not null,
+    constraint vault_items_pkey primary key (id)
+);
+
+-- Keyset-Pagination: where user_id = ? and (created_at, id) > (?, ?) order by created_at, id
+create index ix_vault_items_user_created on vault_items (user_id, created_at, id);
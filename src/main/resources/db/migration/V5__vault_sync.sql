@@ -0,0 +1,18 @@
+-- Delta-Sync: pro User monoton steigende Version; jeder Schreibvorgang stempelt das Item mit der neuen
+-- Version, Löschungen bleiben als Tombstones stehen, bis der Sweeper sie nach Ablauf der Frist entfernt.
+alter table users add column vault_version        bigint not null default 0;
+alter table users add column vault_purged_version bigint not null default 0;
+
+alter table vault_items add column version bigint  not null default 0;
+alter table vault_items add column deleted boolean not null default false;
+
+update vault_items v set version = r.rn
+from (select id, row_number() over (partition by user_id order by created_at, id) as rn from vault_items) r
+where v.id = r.id;
+
+update users u set vault_version = m.v
+from (select user_id, max(version) as v from vault_items group by user_id) m
+where u.id = m.user_id;
+
+create index ix_vault_items_user_version on vault_items (user_id, version, id);
+create index ix_vault_items_tombstones on vault_items (updated_at) where deleted;
@@ -0,0 +1,11 @@
+-- Envelope-Verschlüsselung: pro User ein Data-Key (DEK), gewrappt mit einem versionierten Master-Key.
+alter table users add column dek_wrapped     varchar(255);
+alter table users add column dek_kek_version integer;
+
+create index ix_users_dek_kek_version on users (dek_kek_version);
+
+-- Arbeitslisten des Re-Encrypt-Jobs: schrumpfen mit jeder migrierten Zeile
+create index ix_users_totp_legacy on users (id)
+    where totp_secret_enc not like 'e1:%' and totp_secret_enc <> '';
+create index ix_vault_items_legacy on vault_items (id)
+    where deleted = false and data_enc not like 'e1:%';
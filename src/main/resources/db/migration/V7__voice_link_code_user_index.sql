@@ -0,0 +1,2 @@
+-- GraphQL lädt Link-Codes gebündelt per user_id in (...) and expires_at > now
+create index if not exists ix_voice_link_code_user_exp on voice_link_codes (user_id, expires_at);
@@ -0,0 +1,27 @@
+-- Rotierende Refresh-Tokens: pro Login eine Familie (= Session); gespeichert wird nur der SHA-256 des Secrets.
+create table refresh_tokens (
+    id         uuid                        not null,
+    family_id  uuid                        not null,
+    user_id    uuid                        not null references users (id) on delete cascade,
+    token_hash varchar(64)                 not null,
+    created_at timestamp(6) with time zone not null,
+    expires_at timestamp(6) with time zone not null,
+    used_at    timestamp(6) with time zone,
+    constraint refresh_tokens_pkey primary key (id)
+);
+
+-- Widerruf einer Session löscht alle Tokens der Familie
+create index ix_refresh_tokens_family on refresh_tokens (family_id);
+-- Aufräumen abgelaufener Tokens
+create index ix_refresh_tokens_expires_at on refresh_tokens (expires_at);
+
+-- Widerrufene Sessions. Ein Eintrag wird nur so lange gebraucht, wie Access-Tokens der Session
+-- noch gültig sein können (expires_at); die Liste bleibt damit klein genug für einen In-Memory-Bloom-Filter.
+create table revoked_sessions (
+    family_id  uuid                        not null,
+    revoked_at timestamp(6) with time zone not null,
+    expires_at timestamp(6) with time zone not null,
+    constraint revoked_sessions_pkey primary key (family_id)
+);
+
+create index ix_revoked_sessions_expires_at on revoked_sessions (expires_at);
@@ -0,0 +1,61 @@
+-- Optionales, nach expires_at (UTC-Tage) partitioniertes Layout für die kurzlebigen Voice-Tabellen.
+-- Nur zusammen mit app.voice.partitioning.enabled=true verwenden: der VoiceExpirySweeper legt dann
+-- die Tagespartitionen vorab an und droppt abgelaufene Partitionen komplett statt Zeilen zu löschen.
+--
+-- Der Primärschlüssel muss den Partitionsschlüssel enthalten; der Code ist deshalb nur noch pro
+-- Partition eindeutig (completeLink sucht über findFirstByCodeAndExpiresAtAfter).
+-- Die Tabellen enthalten nur Minuten-lang gültige Daten und werden beim Umstellen verworfen.
+-- Heute bis übermorgen (UTC) werden direkt angelegt, damit Inserts nicht bis zum ersten Sweep scheitern;
+-- die DEFAULT-Partition fängt alles auf, wofür der Sweeper (noch) keine Tagespartition angelegt hat.
+
+begin;
+
+drop table if exists voice_challenges;
+drop table if exists voice_link_codes;
+
+create table voice_challenges (
+    id          uuid                     not null,
+    user_id     uuid                     not null references users (id),
+    code        varchar(6)               not null,
+    expires_at  timestamp(6) with time zone not null,
+    created_at  timestamp(6) with time zone not null,
+    verified_at timestamp(6) with time zone,
+    verified    boolean                  not null,
+    device_id   varchar(512),
+    attempts    integer                  not null,
+    primary key (id, expires_at)
+) partition by range (expires_at);
+
+create index ix_voice_challenge_user_code on voice_challenges (user_id, code);
+create index ix_voice_challenge_user_verified_exp on voice_challenges (user_id, verified, expires_at);
+create index ix_voice_challenge_expires_at on voice_challenges (expires_at);
+
+create table voice_link_codes (
+    id         uuid                     not null,
+    user_id    uuid                     not null references users (id),
+    code       varchar(6)               not null,
+    expires_at timestamp(6) with time zone not null,
+    primary key (id, expires_at)
+) partition by range (expires_at);
+
+create unique index ix_voice_link_code_code on voice_link_codes (code, expires_at);
+create index ix_voice_link_code_expires_at on voice_link_codes (expires_at);
+create index ix_voice_link_code_user_exp on voice_link_codes (user_id, expires_at);
+
+create table voice_challenges_default partition of voice_challenges default;
+create table voice_link_codes_default partition of voice_link_codes default;
+
+do $$
+declare
+    t   text;
+    day date;
+begin
+    foreach t in array array['voice_challenges', 'voice_link_codes'] loop
+        for day in select generate_series((now() at time zone 'utc')::date, (now() at time zone 'utc')::date + 2, interval '1 day')::date loop
+            execute format('create table %I partition of %I for values from (%L) to (%L)',
+                           t || '_p' || to_char(day, 'YYYYMMDD'), t, day || ' 00:00:00+00', (day + 1) || ' 00:00:00+00');
+        end loop;
+    end loop;
+end $$;
+
+commit;
@@ -0,0 +1,99 @@
+package com.example.pwm.repo;
+
+import com.example.pwm.entity.UserAccount;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * N parallele Fehlversuche gegen dasselbe Konto müssen genau N gezählte Fehlversuche ergeben
+ * (kein Read-Modify-Write, keine verlorenen Updates). Läuft gegen ein eingebettetes Postgres mit dem Flyway-Schema.
+ */
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LoginFailureConcurrencyTest {
+
+    private static final int ATTEMPTS = 64;
+    private static final int THREADS = 16;
+    private static final int PER_TIER = 3;
+
+    private static final EmbeddedPostgres PG;
+
+    static {
+        try {
+            PG = EmbeddedPostgres.builder().start();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> PG.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "validate");
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        PG.close();
+    }
+
+    @Autowired
+    UserAccountRepository users;
+
+    @Test
+    void parallelFailuresAreAllCounted() throws Exception {
+        UserAccount u = new UserAccount();
+        u.setEmail("race-" + UUID.randomUUID() + "@example.test");
+        UUID id = users.save(u).getId();
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < ATTEMPTS; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return users.registerLoginFailure(id, Instant.now(), PER_TIER, 300, 86_400).orElseThrow();
+                }));
+            }
+            start.countDown();
+            // jeder Zählerstand 1..N genau einmal: darauf zählt der Login die Sperren
+            Set<Integer> seen = new HashSet<>();
+            for (Future<Integer> f : results) seen.add(f.get());
+            assertThat(seen).containsExactlyInAnyOrderElementsOf(
+                    IntStream.rangeClosed(1, ATTEMPTS).boxed().toList());
+        } finally {
+            pool.shutdown();
+        }
+
+        UserAccount after = users.findById(id).orElseThrow();
+        assertThat(after.getVoiceFailedAttempts()).isEqualTo(ATTEMPTS);
+        assertThat(after.getVoiceLockUntil()).isAfter(Instant.now());
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.pwm.repo;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Routing über den {@code LazyConnectionDataSourceProxy} wie in {@link ReplicaDataSourceConfig}.
+ * Primary und "Replikat" sind zwei Datenbanken desselben eingebetteten Postgres; welche eine Connection
+ * bekommen hat, zeigt {@code current_database()}.
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private static EmbeddedPostgres pg;
+
+    private final FlakyDataSource replica = new FlakyDataSource();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private ReplicaRoutingDataSource routing;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeAll
+    static void start() throws IOException {
+        pg = EmbeddedPostgres.builder().start();
+        new JdbcTemplate(pg.getPostgresDatabase()).execute("create database replica");
+    }
+
+    @AfterAll
+    static void stop() throws IOException {
+        pg.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        replica.target = pg.getDatabase("postgres", "replica");
+        routing = new ReplicaRoutingDataSource(pg.getPostgresDatabase(), replica, Duration.ofSeconds(1), registry);
+        DataSource ds = new LazyConnectionDataSourceProxy(routing);
+        jdbc = new JdbcTemplate(ds);
+        DataSourceTransactionManager tx = new DataSourceTransactionManager(ds);
+        readOnly = new TransactionTemplate(tx);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(tx);
+    }
+
+    @Test
+    void writesAndReadOnlyTransactionsAreRouted() {
+        routing.probe();
+        // der Proxy holt beim ersten Zugriff einmal eine Connection für seine Defaults
+        database();
+        double writes = count("primary", "write");
+
+        assertThat(database(readWrite)).isEqualTo("postgres");
+        assertThat(database()).isEqualTo("postgres");
+        assertThat(database(readOnly)).isEqualTo("replica");
+
+        assertThat(count("primary", "write") - writes).isEqualTo(2);
+        assertThat(count("replica", "read")).isEqualTo(1);
+    }
+
+    @Test
+    void readsUsePrimaryUntilFirstProbe() {
+        assertThat(database(readOnly)).isEqualTo("postgres");
+        assertThat(count("primary", "replica-down")).isEqualTo(1);
+    }
+
+    @Test
+    void failingReplicaFallsBackToPrimaryUntilNextProbe() {
+        routing.probe();
+        replica.failing = true;
+
+        assertThat(database(readOnly)).isEqualTo("postgres");
+        assertThat(count("primary", "replica-error")).isEqualTo(1);
+        // als down markiert: kein weiterer Versuch am Replikat
+        assertThat(database(readOnly)).isEqualTo("postgres");
+        assertThat(count("primary", "replica-down")).isEqualTo(1);
+        assertThat(replica.attempts).isEqualTo(2);
+
+        replica.failing = false;
+        routing.probe();
+        assertThat(database(readOnly)).isEqualTo("replica");
+    }
+
+    @Test
+    void foreignCredentialsAreNotSupported() {
+        assertThatThrownBy(() -> routing.getConnection("other", "secret"))
+                .isInstanceOf(SQLFeatureNotSupportedException.class);
+    }
+
+    private String database() {
+        return jdbc.queryForObject("select current_database()", String.class);
+    }
+
+    private String database(TransactionTemplate tx) {
+        return tx.execute(s -> database());
+    }
+
+    private double count(String route, String reason) {
+        return registry.get("pwm.datasource.connections").tag("route", route).tag("reason", reason).counter().count();
+    }
+
+    /** Replikat, das sich auf Zuruf wie ein ausgefallener Server verhält. */
+    private static final class FlakyDataSource extends AbstractDataSource {
+        volatile DataSource target;
+        volatile boolean failing;
+        int attempts;
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            attempts++;
+            if (failing) throw new SQLException("Connection refused", "08001");
+            return target.getConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return getConnection();
+        }
+    }
+}